@@ -0,0 +1,46 @@
+package ru.practicum.shareit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Запросы с IN по большим коллекциям: значения делятся на части фиксированного размера. Так число параметров
+ * не упирается в предел драйвера PostgreSQL (32767), а вместе с hibernate.query.in_clause_parameter_padding
+ * в кэше планов остаётся всего несколько вариантов запроса.
+ */
+public final class InChunks {
+    public static final int CHUNK_SIZE = 1024;
+
+    private InChunks() {
+    }
+
+    /**
+     * Выполняет query для каждой части values и склеивает результаты в порядке частей.
+     */
+    public static <T, R> List<R> query(Collection<T> values, Function<List<T>, List<R>> query) {
+        List<T> all = new ArrayList<>(values);
+        if (all.size() <= CHUNK_SIZE) {
+            return query.apply(all);
+        }
+        List<R> result = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            result.addAll(query.apply(all.subList(from, Math.min(from + CHUNK_SIZE, all.size()))));
+        }
+        return result;
+    }
+
+    /**
+     * Выполняет изменяющий запрос для каждой части values, возвращает сумму изменённых строк.
+     */
+    public static <T> int update(Collection<T> values, ToIntFunction<List<T>> update) {
+        List<T> all = new ArrayList<>(values);
+        int updated = 0;
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            updated += update.applyAsInt(all.subList(from, Math.min(from + CHUNK_SIZE, all.size())));
+        }
+        return updated;
+    }
+}
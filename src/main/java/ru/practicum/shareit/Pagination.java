@@ -1,48 +1,79 @@
 package ru.practicum.shareit;
 
-import lombok.Getter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import javax.validation.ValidationException;
 
-@Getter
-public class Pagination {
-    private Integer pageSize;
-    private Integer index;
-    private Integer totalPages;
-
-
-    public Pagination(Integer from, Integer size) {
-        if (size != null) {
-            if ((from < 0) || (size < 0)) {
-                throw new ValidationException("Значение не может быть меньше нуля!");
-            }
-            if (size.equals(0)) {
-                throw new ValidationException("Значение должно быть больше нуля!");
-            }
+/**
+ * Pageable по смещению: from/size из запроса превращаются ровно в OFFSET/LIMIT одного запроса к базе.
+ * Без size отдаются все записи начиная с from.
+ */
+public class Pagination implements Pageable {
+    private final long offset;
+    private final int pageSize;
+    private final Sort sort;
+
+    public Pagination(Integer from, Integer size, Sort sort) {
+        if (from < 0 || (size != null && size < 0)) {
+            throw new ValidationException("Значение не может быть меньше нуля!");
         }
-        pageSize = from;
-        index = 1;
-        totalPages = 0;
-        if (size == null) {
-            if (from.equals(0)) {
-                pageSize = 1000;
-                index = 0;
-            }
-        } else {
-            if (from.equals(size)) {
-                pageSize = size;
-            }
-            if (from.equals(0)) {
-                pageSize = size;
-                index = 0;
-            }
-            totalPages = index + 1;
-            if ((from < size) && (!from.equals(0))) {
-                totalPages = size / from + index;
-                if (size % from != 0) {
-                    totalPages++;
-                }
-            }
+        if (size != null && size.equals(0)) {
+            throw new ValidationException("Значение должно быть больше нуля!");
         }
+        this.offset = from;
+        this.pageSize = size == null ? Integer.MAX_VALUE : size;
+        this.sort = sort;
+    }
+
+    private Pagination(long offset, int pageSize, Sort sort) {
+        this.offset = offset;
+        this.pageSize = pageSize;
+        this.sort = sort;
+    }
+
+    @Override
+    public int getPageNumber() {
+        return (int) (offset / pageSize);
+    }
+
+    @Override
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    @Override
+    public Pageable next() {
+        return new Pagination(offset + pageSize, pageSize, sort);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new Pagination(Math.max(offset - pageSize, 0), pageSize, sort) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new Pagination(0L, pageSize, sort);
+    }
+
+    @Override
+    public Pageable withPage(int pageNumber) {
+        return new Pagination((long) pageNumber * pageSize, pageSize, sort);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package ru.practicum.shareit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Кэш общего количества записей для списков, которые отдаются страницами без count(*).
+ * Количество считается только по запросу клиента (заголовок X-Include-Total) и живёт ttl,
+ * поэтому оно приблизительное: свежие изменения видны не сразу.
+ */
+@Component
+public class TotalCountCache {
+    public static final String REQUEST_HEADER = "X-Include-Total";
+    public static final String RESPONSE_HEADER = "X-Total-Count";
+
+    private final Cache<String, Long> counts;
+
+    public TotalCountCache(@Value("${shareit.total-count.ttl:30s}") Duration ttl,
+                           @Value("${shareit.total-count.max-size:10000}") long maxSize) {
+        this.counts = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public long get(String key, Supplier<Long> counter) {
+        return counts.get(key, k -> counter.get());
+    }
+
+    /**
+     * Для количеств, которые база считает одним запросом: при промахе counter возвращает их все по ключам,
+     * и в кэш попадают сразу все.
+     */
+    public long getAll(String key, Supplier<Map<String, Long>> counter) {
+        Long count = counts.getIfPresent(key);
+        if (count == null) {
+            Map<String, Long> loaded = counter.get();
+            counts.putAll(loaded);
+            count = loaded.get(key);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.shareit;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Привязка действий над данными в памяти к исходу текущей транзакции.
+ */
+public final class Transactions {
+
+    private Transactions() {
+    }
+
+    /**
+     * После коммита выполняет onCommit, после отката - onRollback. Вне транзакции onCommit выполняется сразу.
+     */
+    public static void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+}
@@ -8,7 +8,10 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "bookings")
+@NamedEntityGraph(name = Booking.WITH_ITEM_AND_BOOKER,
+        attributeNodes = {@NamedAttributeNode("item"), @NamedAttributeNode("booker")})
 public class Booking {
+    public static final String WITH_ITEM_AND_BOOKER = "Booking.withItemAndBooker";
 
     public long getId() {
         return id;
@@ -42,6 +45,14 @@ public class Booking {
         this.item = item;
     }
 
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+
     public User getBooker() {
         return booker;
     }
@@ -58,6 +69,22 @@ public class Booking {
         this.status = status;
     }
 
+    public BookingPhase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(BookingPhase phase) {
+        this.phase = phase;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Booking{" +
@@ -65,13 +92,16 @@ public class Booking {
                 ", start=" + start +
                 ", end=" + end +
                 ", item=" + item +
+                ", ownerId=" + ownerId +
                 ", booker=" + booker +
                 ", status=" + status +
+                ", phase=" + phase +
                 '}';
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 50)
     @Column(name = "id")
     private long id;
 
@@ -81,14 +111,24 @@ public class Booking {
     @Column(name = "end_booking")
     private LocalDateTime end;
 
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "item_id", referencedColumnName = "id")
     private Item item;
 
-    @ManyToOne()
+    // Копия items.user_id: держится внешним ключом (item_id, owner_id) с ON UPDATE CASCADE
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "booker_id", referencedColumnName = "id")
     private User booker;
 
     @Enumerated(EnumType.STRING)
     private BookingStatus status;
+
+    @Enumerated(EnumType.STRING)
+    private BookingPhase phase;
+
+    @Version
+    private long version;
 }
@@ -2,7 +2,11 @@ package ru.practicum.shareit.booking;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.TotalCountCache;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingBatchUpdateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingShortDto;
 
@@ -13,6 +17,8 @@ import java.util.List;
 @RestController
 @RequestMapping(path = "/bookings")
 public class BookingController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final BookingService bookingService;
 
     @Autowired
@@ -27,16 +33,32 @@ public class BookingController {
         return bookingService.createBooking(bookerId, bookingDto);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<BookingBatchResultDto>> addAll(@RequestHeader("X-Sharer-User-Id") Long bookerId,
+                                                              @RequestBody List<BookingDto> bookingDtos) {
+        log.info(String.format("Получен запрос на пакетное бронирование: %s броней пользователем %s",
+                bookingDtos.size(), bookerId));
+        List<BookingBatchResultDto> results = bookingService.createBookings(bookerId, bookingDtos);
+        boolean rejected = results.stream().anyMatch(result -> result.getError() != null);
+        return (rejected ? ResponseEntity.badRequest() : ResponseEntity.ok()).body(results);
+    }
 
+    // решение - один условный UPDATE; ответ с вещью и автором собирается вторым запросом (SELECT с join)
     @PatchMapping("/{bookingId}")
     BookingDto update(@RequestHeader("X-Sharer-User-Id") Long ownerId,
-                                     @PathVariable Long bookingId,
-                          @RequestParam(value = "approved",
-                          required = false) Boolean approved) {
+                      @PathVariable Long bookingId,
+                      @RequestParam(value = "approved", required = false) Boolean approved) {
         log.info(String.format("Получен запрос на обновление брони: '%s' пользователем %s", bookingId, ownerId));
         return bookingService.updateBooking(ownerId, bookingId, approved);
     }
 
+    @PatchMapping("/batch")
+    List<BookingBatchResultDto> updateAll(@RequestHeader("X-Sharer-User-Id") Long ownerId,
+                                          @RequestBody BookingBatchUpdateDto batch) {
+        log.info(String.format("Получен запрос на обновление броней: '%s' пользователем %s", batch, ownerId));
+        return bookingService.updateBookings(ownerId, batch);
+    }
+
     @GetMapping("/{bookingId}")
     BookingShortDto getWithStatusById(@RequestHeader("X-Sharer-User-Id") Long userId,
                                       @PathVariable Long bookingId) {
@@ -46,20 +68,49 @@ public class BookingController {
     }
 
     @GetMapping
-    List<BookingShortDto> getByUserId(@RequestHeader("X-Sharer-User-Id") Long userId,
+    ResponseEntity<List<BookingShortDto>> getByUserId(@RequestHeader("X-Sharer-User-Id") Long userId,
                                       @RequestParam(value = "state", defaultValue = "ALL") String state,
                                       @RequestParam(defaultValue = "0") Integer from,
-                                      @RequestParam(required = false) Integer size) {
+                                      @RequestParam(required = false) Integer size,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestHeader(value = TotalCountCache.REQUEST_HEADER,
+                                              defaultValue = "false") boolean includeTotal) {
         log.info(String.format("Получен запрос на получение броней со статусом: '%s' пользователем %s", state, userId));
-        return bookingService.getByUserId(userId, state, from, size);
+        List<BookingShortDto> bookings = cursor == null
+                ? bookingService.getByUserId(userId, state, from, size)
+                : bookingService.getByUserIdAfter(userId, state, cursor, size);
+        ResponseEntity.BodyBuilder response = withNextCursor(bookings, size);
+        if (includeTotal) {
+            response.header(TotalCountCache.RESPONSE_HEADER, String.valueOf(bookingService.countByUserId(userId, state)));
+        }
+        return response.body(bookings);
     }
 
     @GetMapping("/owner")
-    public List<BookingShortDto> getByOwnerId(@RequestHeader("X-Sharer-User-Id") Long ownerId,
+    public ResponseEntity<List<BookingShortDto>> getByOwnerId(@RequestHeader("X-Sharer-User-Id") Long ownerId,
                                               @RequestParam(value = "state", defaultValue = "ALL") String state,
                                               @RequestParam(defaultValue = "0") Integer from,
-                                              @RequestParam(required = false) Integer size) {
+                                              @RequestParam(required = false) Integer size,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestHeader(value = TotalCountCache.REQUEST_HEADER,
+                                                      defaultValue = "false") boolean includeTotal) {
         log.info(String.format("Получен запрос на получение броней со статусом: '%s' владельцем %s", state, ownerId));
-        return bookingService.getByOwnerId(ownerId, state, from, size);
+        List<BookingShortDto> bookings = cursor == null
+                ? bookingService.getByOwnerId(ownerId, state, from, size)
+                : bookingService.getByOwnerIdAfter(ownerId, state, cursor, size);
+        ResponseEntity.BodyBuilder response = withNextCursor(bookings, size);
+        if (includeTotal) {
+            response.header(TotalCountCache.RESPONSE_HEADER, String.valueOf(bookingService.countByOwnerId(ownerId, state)));
+        }
+        return response.body(bookings);
+    }
+
+    private ResponseEntity.BodyBuilder withNextCursor(List<BookingShortDto> bookings, Integer size) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String next = BookingCursor.next(bookings, size);
+        if (next != null) {
+            response.header(NEXT_CURSOR_HEADER, next);
+        }
+        return response;
     }
 }
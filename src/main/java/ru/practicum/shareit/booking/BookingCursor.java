@@ -0,0 +1,61 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.booking.dto.BookingShortDto;
+
+import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Непрозрачный курсор для постраничного вывода бронирований: позиция (start, id)
+ * последней отданной записи в порядке "start DESC, id DESC".
+ */
+public class BookingCursor {
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime start;
+    private final long id;
+
+    public BookingCursor(LocalDateTime start, long id) {
+        this.start = start;
+        this.id = id;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = start + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookingCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new BookingCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ValidationException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    /**
+     * Курсор для следующей страницы или null, если страница неполная и продолжения нет.
+     */
+    public static String next(List<BookingShortDto> bookings, Integer size) {
+        if (size == null || bookings.isEmpty() || bookings.size() < size) {
+            return null;
+        }
+        BookingShortDto last = bookings.get(bookings.size() - 1);
+        return new BookingCursor(last.getStart(), last.getId()).encode();
+    }
+}
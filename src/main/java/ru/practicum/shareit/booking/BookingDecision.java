@@ -0,0 +1,7 @@
+package ru.practicum.shareit.booking;
+
+public interface BookingDecision extends BookingInterval {
+    Long getOwnerId();
+
+    BookingStatus getStatus();
+}
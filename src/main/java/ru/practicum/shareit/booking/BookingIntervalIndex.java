@@ -0,0 +1,102 @@
+package ru.practicum.shareit.booking;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.Transactions;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
+import ru.practicum.shareit.user.UserDeletedEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Занятость вещей в памяти: бронирования в статусах WAITING и APPROVED, закончившиеся до загрузки снимка
+ * не хранятся. Снимок вещи загружается из базы при первом обращении: в кэш сразу кладётся future,
+ * а запрос выполняет вызывающий поток вне блокировок кэша, остальные ждут тот же future.
+ * Кэш ограничен размером и временем простоя. Запись применяется сразу, чтобы встречные запросы видели резерв,
+ * повторяется после коммита (на случай загрузки снимка без этой строки) и откатывается, если транзакция
+ * не прошла. Запись, пришедшая во время загрузки, применяется к снимку, когда он загрузится.
+ * Попадания и промахи видны в метриках cache.gets с тегом cache=bookings.timelines.
+ */
+@Component
+public class BookingIntervalIndex {
+    public static final String NAME = "bookings.timelines";
+    static final List<BookingStatus> BUSY = List.of(BookingStatus.WAITING, BookingStatus.APPROVED);
+
+    private final BookingRepository bookingRepository;
+    private final AsyncCache<Long, ItemTimeline> timelines;
+
+    public BookingIntervalIndex(BookingRepository bookingRepository,
+                                @Value("${shareit.booking.timeline-cache.max-size:10000}") long maxSize,
+                                @Value("${shareit.booking.timeline-cache.expire-after-access:10m}") Duration idle,
+                                MeterRegistry meterRegistry) {
+        this.bookingRepository = bookingRepository;
+        this.timelines = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idle)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, timelines, NAME);
+    }
+
+    public List<TimeSlotDto> freeSlots(long itemId, LocalDateTime from, LocalDateTime to) {
+        ItemTimeline timeline = timeline(itemId);
+        if (!timeline.covers(from)) {
+            // окно начинается раньше снимка, прошлые бронирования читаются из базы
+            return ItemTimeline.of(bookingRepository.findOverlapping(List.of(itemId), BUSY, from, to), from)
+                    .freeSlots(from, to);
+        }
+        return timeline.freeSlots(from, to);
+    }
+
+    public void reserve(long itemId, long bookingId, LocalDateTime start, LocalDateTime end) {
+        add(itemId, bookingId, start, end);
+        Transactions.afterCompletion(() -> add(itemId, bookingId, start, end), () -> remove(itemId, bookingId));
+    }
+
+    public void release(long itemId, long bookingId, LocalDateTime start, LocalDateTime end) {
+        remove(itemId, bookingId);
+        Transactions.afterCompletion(() -> remove(itemId, bookingId), () -> add(itemId, bookingId, start, end));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        // бронирования и вещи пользователя удалены в базе каскадом
+        timelines.synchronous().invalidateAll(event.getItemIds());
+    }
+
+    private ItemTimeline timeline(long itemId) {
+        CompletableFuture<ItemTimeline> created = new CompletableFuture<>();
+        CompletableFuture<ItemTimeline> timeline = timelines.get(itemId, (id, executor) -> created);
+        if (timeline == created) {
+            // загрузка в своей транзакции вызывающего: снимок видит и его незакоммиченные бронирования
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                created.complete(ItemTimeline.of(bookingRepository.findIntervalsEndingAfter(itemId, BUSY, now), now));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        // записи, пришедшие во время загрузки, добавлены в кэш цепочкой поверх загруженного снимка
+        return timelines.asMap().getOrDefault(itemId, timeline).join();
+    }
+
+    private void add(long itemId, long bookingId, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime now = LocalDateTime.now();
+        timelines.asMap().computeIfPresent(itemId,
+                (id, timeline) -> timeline.thenApply(loaded -> loaded.with(bookingId, start, end, now)));
+    }
+
+    private void remove(long itemId, long bookingId) {
+        timelines.asMap().computeIfPresent(itemId,
+                (id, timeline) -> timeline.thenApply(loaded -> loaded.without(bookingId)));
+    }
+}
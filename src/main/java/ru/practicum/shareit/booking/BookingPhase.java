@@ -0,0 +1,19 @@
+package ru.practicum.shareit.booking;
+
+import java.time.LocalDateTime;
+
+/**
+ * Положение бронирования во времени, хранится в столбце phase и сдвигается BookingPhaseScheduler.
+ */
+public enum BookingPhase {
+    FUTURE,
+    CURRENT,
+    PAST;
+
+    public static BookingPhase of(LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        if (end.isBefore(now)) {
+            return PAST;
+        }
+        return start.isBefore(now) ? CURRENT : FUTURE;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.shareit.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Сдвигает phase бронирований, у которых прошло начало или конец. Работает пачками по batchSize строк,
+ * каждая пачка в своей транзакции, чтобы не держать блокировки на всю выборку.
+ */
+@Slf4j
+@Component
+public class BookingPhaseScheduler {
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Pageable batch;
+
+    public BookingPhaseScheduler(BookingRepository bookingRepository, TransactionTemplate transactionTemplate,
+                                 @Value("${shareit.booking.phase.batch-size:500}") int batchSize) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batch = PageRequest.of(0, batchSize, Sort.by("id"));
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking.phase.interval:60000}")
+    public void advancePhases() {
+        int moved = advancePhases(LocalDateTime.now());
+        if (moved > 0) {
+            log.info("Обновлена фаза у {} бронирований", moved);
+        }
+    }
+
+    /**
+     * Возвращает число бронирований, у которых сменилась фаза.
+     */
+    public int advancePhases(LocalDateTime now) {
+        int moved = 0;
+        int batchMoved;
+        do {
+            batchMoved = advance(List.of(BookingPhase.FUTURE, BookingPhase.CURRENT), BookingPhase.PAST, now);
+            moved += batchMoved;
+        } while (batchMoved == batch.getPageSize());
+        do {
+            batchMoved = advance(List.of(BookingPhase.FUTURE), BookingPhase.CURRENT, now);
+            moved += batchMoved;
+        } while (batchMoved == batch.getPageSize());
+        return moved;
+    }
+
+    private int advance(Collection<BookingPhase> phases, BookingPhase phase, LocalDateTime now) {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<Long> ids = phase == BookingPhase.PAST
+                    ? bookingRepository.findIdsEndedBefore(phases, now, batch)
+                    : bookingRepository.findIdsStartedBefore(phases, now, batch);
+            return ids.isEmpty() ? 0 : bookingRepository.updatePhase(ids, phases, phase);
+        });
+        return moved == null ? 0 : moved;
+    }
+}
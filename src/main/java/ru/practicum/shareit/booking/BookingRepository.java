@@ -1,64 +1,94 @@
 package ru.practicum.shareit.booking;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.PagingAndSortingRepository;
-import ru.practicum.shareit.item.model.Item;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
-
-public interface BookingRepository extends PagingAndSortingRepository<Booking, Long> {
-    @Query("select b from Booking b where b.booker.id = ?1")
-    Page<Booking> findAllBookingsByBooker(Long bookerId, Pageable pageable);
-
-
+import java.util.Optional;
+
+public interface BookingRepository extends JpaRepository<Booking, Long>, JpaSpecificationExecutor<Booking>,
+        BookingRepositoryCustom {
+    String STATE_COUNTS = "select count(b) as total," +
+            " coalesce(sum(case when b.start < :now and b.end > :now then 1 else 0 end), 0) as currentCount," +
+            " coalesce(sum(case when b.end < :now then 1 else 0 end), 0) as pastCount," +
+            " coalesce(sum(case when b.start > :now then 1 else 0 end), 0) as futureCount," +
+            " coalesce(sum(case when b.status = :waiting then 1 else 0 end), 0) as waitingCount," +
+            " coalesce(sum(case when b.status = :rejected then 1 else 0 end), 0) as rejectedCount" +
+            " from Booking b";
+
+    @Override
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    Optional<Booking> findById(Long id);
+
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
     @Query("select b from Booking b where b.booker.id = ?1 order by b.start DESC")
     List<Booking> findAllBookingsByBooker(Long id);
 
-    Page<Booking> findByBookerIdAndStartIsBeforeAndEndIsAfter(Long bookerId, LocalDateTime start,
-                                                              LocalDateTime end, Pageable pageable);
-
-    @Query("select b from Booking b where b.item.userId = ?1 ")
-    Page<Booking> findByItemOwnerId(Long ownerId, Pageable pageable);
-
-
-    @Query("select b from Booking b" +
-            " where b.item.userId = ?1 and b.start < ?2 and b.end > ?2")
-    Page<Booking> findByItemOwnerIdAndStartIsBeforeAndEndIsAfter(Long ownerId, LocalDateTime start, Pageable pageable);
-
-    Page<Booking> findByBookerIdAndEndIsBefore(Long bookerId, LocalDateTime end, Pageable pageable);
-
-    Page<Booking> findByBookerIdAndStartIsAfter(Long bookerId, LocalDateTime start, Pageable pageable);
-
-    Page<Booking> findByBookerIdAndStatus(Long bookerId, BookingStatus status, Pageable pageable);
-
-    @Query("select b from Booking b where b.item.userId = ?1 and b.status = ?2")
-    Page<Booking> findByItemOwnerIdAndStatus(Long bookerId, BookingStatus status, Pageable pageable);
-
-    @Query("select b from Booking b" +
-            " where b.item.userId = ?1 and b.start > ?2")
-    Page<Booking> findByItemOwnerIdAndStartIsAfter(Long bookerId, LocalDateTime start, Pageable pageable);
-
-    @Query("select b from Booking b" +
-            " where b.item.userId = ?1 and b.end < ?2")
-    Page<Booking> findByItemOwnerIdAndEndIsBefore(Long bookerId, LocalDateTime end, Pageable pageable);
-
-    Booking findFirstByItemIdAndEndBeforeOrderByEndDesc(Long itemId, LocalDateTime end);
-
-    Booking findFirstByItemIdAndStartAfterOrderByStartAsc(Long itemId, LocalDateTime end);
-
-    @Query("select b from Booking b" +
-            " where b.item.id = ?1" +
-            " order by b.start ASC") //b.start DESC
-    List<Booking> test2(Long itemId, LocalDateTime end);
-
-    @Query(" select b " +
-            "from Booking b " +
-            "where b.item in ?1 " +
-            "  and b.status = 'APPROVED'")
-    List<Booking> findApprovedForItems(Collection<Item> items, Sort sort);
+    /**
+     * Переводит бронирование из WAITING в новый статус одним UPDATE. Возвращает 0, если бронирования нет,
+     * пользователь не владелец вещи или статус уже не WAITING.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.status = :status, b.version = b.version + 1" +
+            " where b.id = :id and b.ownerId = :ownerId and b.status = :waiting")
+    int updateStatusIfWaiting(@Param("id") Long id, @Param("ownerId") Long ownerId,
+                              @Param("status") BookingStatus status, @Param("waiting") BookingStatus waiting);
+
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end from Booking b" +
+            " where b.item.id = :itemId and b.status in :statuses and b.end > :after")
+    List<BookingInterval> findIntervalsEndingAfter(@Param("itemId") Long itemId,
+                                                   @Param("statuses") Collection<BookingStatus> statuses,
+                                                   @Param("after") LocalDateTime after);
+
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end from Booking b" +
+            " where b.item.id in :itemIds and b.status in :statuses and b.start < :to and b.end > :from")
+    List<BookingInterval> findOverlapping(@Param("itemIds") Collection<Long> itemIds,
+                                          @Param("statuses") Collection<BookingStatus> statuses,
+                                          @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("select b.item.id as itemId, count(b) as bookings from Booking b group by b.item.id")
+    List<ItemBookingCount> countBookingsByItem();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end, b.ownerId as ownerId," +
+            " b.status as status from Booking b where b.id in :ids")
+    List<BookingDecision> findDecisionsForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.status = :status, b.version = b.version + 1" +
+            " where b.id in :ids and b.ownerId = :ownerId and b.status = :waiting")
+    int updateStatusIfWaiting(@Param("ids") Collection<Long> ids, @Param("ownerId") Long ownerId,
+                              @Param("status") BookingStatus status, @Param("waiting") BookingStatus waiting);
+
+    @Query("select b.id from Booking b where b.phase in :phases and b.end < :now")
+    List<Long> findIdsEndedBefore(@Param("phases") Collection<BookingPhase> phases,
+                                  @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("select b.id from Booking b where b.phase in :phases and b.start < :now")
+    List<Long> findIdsStartedBefore(@Param("phases") Collection<BookingPhase> phases,
+                                    @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.phase = :phase where b.id in :ids and b.phase in :phases")
+    int updatePhase(@Param("ids") Collection<Long> ids, @Param("phases") Collection<BookingPhase> phases,
+                    @Param("phase") BookingPhase phase);
+
+    @Query(STATE_COUNTS + " where b.booker.id = :userId")
+    BookingStateCounts countStatesByBookerId(@Param("userId") Long bookerId, @Param("now") LocalDateTime now,
+                                             @Param("waiting") BookingStatus waiting,
+                                             @Param("rejected") BookingStatus rejected);
+
+    @Query(STATE_COUNTS + " where b.ownerId = :userId")
+    BookingStateCounts countStatesByItemOwnerId(@Param("userId") Long ownerId, @Param("now") LocalDateTime now,
+                                                @Param("waiting") BookingStatus waiting,
+                                                @Param("rejected") BookingStatus rejected);
 }
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.shareit.booking.dto.BookingShortDto;
+
+import java.util.List;
+
+public interface BookingRepositoryCustom {
+
+    /**
+     * Страница бронирований по условию без отдельного count(*): ровно OFFSET/LIMIT из pageable.
+     * Строки сразу собираются в BookingShortDto, сущности Item и User в контекст не попадают.
+     */
+    List<BookingShortDto> findShort(Specification<Booking> spec, Pageable pageable);
+}
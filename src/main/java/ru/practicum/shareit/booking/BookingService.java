@@ -1,5 +1,7 @@
 package ru.practicum.shareit.booking;
 
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingBatchUpdateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingShortDto;
 
@@ -9,11 +11,23 @@ public interface BookingService {
 
     BookingDto createBooking(Long bookerId, BookingDto bookingDto);
 
+    List<BookingBatchResultDto> createBookings(Long bookerId, List<BookingDto> bookingDtos);
+
     BookingDto updateBooking(Long ownerId, Long bookingId, Boolean approved);
 
+    List<BookingBatchResultDto> updateBookings(Long ownerId, BookingBatchUpdateDto batch);
+
     BookingShortDto getById(Long userId, Long bookingId);
 
     List<BookingShortDto> getByUserId(Long userId, String state, Integer from, Integer size);
 
     List<BookingShortDto> getByOwnerId(Long ownerId, String state, Integer from, Integer size);
+
+    List<BookingShortDto> getByUserIdAfter(Long userId, String state, String cursor, Integer size);
+
+    List<BookingShortDto> getByOwnerIdAfter(Long ownerId, String state, String cursor, Integer size);
+
+    long countByUserId(Long userId, String state);
+
+    long countByOwnerId(Long ownerId, String state);
 }
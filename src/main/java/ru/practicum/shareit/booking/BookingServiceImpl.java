@@ -2,82 +2,214 @@ package ru.practicum.shareit.booking;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.InChunks;
 import ru.practicum.shareit.Pagination;
+import ru.practicum.shareit.TotalCountCache;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingBatchUpdateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingMapper;
 import ru.practicum.shareit.booking.dto.BookingShortDto;
-import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.booking.summary.ItemBookingSummaryService;
+import ru.practicum.shareit.error.model.ConflictException;
+import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSuggestIndex;
 import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.model.User;
 
 import javax.validation.ValidationException;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
+import static ru.practicum.shareit.booking.BookingSpecifications.after;
+import static ru.practicum.shareit.booking.BookingSpecifications.byBooker;
+import static ru.practicum.shareit.booking.BookingSpecifications.byOwner;
+import static ru.practicum.shareit.booking.BookingSpecifications.inStates;
+
 @Slf4j
 @Service
 @AllArgsConstructor
 @Transactional(readOnly = true)
 public class BookingServiceImpl implements BookingService {
+    private static final Sort BY_START_DESC = Sort.by(Sort.Direction.DESC, "start", "id");
+    private static final String EXCLUSION_VIOLATION = "23P01";
+    private static final String OVERLAP = "Вещь уже забронирована на это время";
+    private static final List<BookingStatus> APPROVED = List.of(BookingStatus.APPROVED);
 
     private final BookingRepository bookingRepository;
     private final UserService userService;
-    private final ItemService itemService;
+    private final ItemRepository itemRepository;
     private final BookingMapper bookingMapper;
+    private final TotalCountCache totalCountCache;
+    private final BookingIntervalIndex intervalIndex;
+    private final ItemLocks itemLocks;
+    private final ItemBookingSummaryService summaryService;
+    private final ItemSuggestIndex suggestIndex;
 
     @Transactional
     @Override
     public BookingDto createBooking(Long bookerId, BookingDto bookingDto) {
-        checkItemIsAvailable(bookingDto.getItemId(), bookerId);
+        User booker = userService.findUserById(bookerId);
+        Item item = lockAvailableItem(bookingDto.getItemId());
         checkBookingTime(bookingDto);
-        if (itemService.findItemById(bookingDto.getItemId(), bookerId).getUserId() == bookerId) {
+        if (item.getUserId() == bookerId) {
             throw new NoSuchElementException("Владелец вещи не может бронировать свою вещь");
         }
 
         bookingDto.setUserId(bookerId);
-        Booking booking = bookingMapper.toBooking(bookingDto);
+        Booking booking = bookingMapper.toBooking(bookingDto, item, booker);
 
-        bookingRepository.save(booking);
+        // ожидающие запросы могут пересекаться, из них выбирает владелец; время занимает только подтверждение
+        if (!bookingRepository.findOverlapping(List.of(bookingDto.getItemId()), APPROVED,
+                bookingDto.getStart(), bookingDto.getEnd()).isEmpty()) {
+            throw new ConflictException(OVERLAP);
+        }
+        bookingRepository.saveAndFlush(booking);
+        reserve(booking);
         return bookingMapper.toBookingDto(booking);
     }
 
     @Transactional
     @Override
-    public BookingDto updateBooking(Long ownerId, Long bookingId, Boolean approved) {
-        if (approved == null) {
+    public List<BookingBatchResultDto> createBookings(Long bookerId, List<BookingDto> bookingDtos) {
+        if (bookingDtos == null || bookingDtos.isEmpty()) {
             throw new ValidationException();
         }
-        Booking booking = getBookingIfExists(bookingId);
+        User booker = userService.findUserById(bookerId);
+        Set<Long> itemIds = bookingDtos.stream()
+                .map(BookingDto::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        // части идут по возрастанию id, поэтому строки блокируются в одном порядке во всех транзакциях
+        Map<Long, Item> items = InChunks.query(itemIds, itemRepository::findAllByIdForUpdate).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
 
-        if (booking.getStatus().equals(BookingStatus.APPROVED) && approved.equals(true)) {
-            throw new ValidationException(true + " - статус уже была присвоен");
+        LocalDateTime now = LocalDateTime.now();
+        List<String> errors = bookingDtos.stream()
+                .map(bookingDto -> checkBatchEntry(bookingDto, items.get(bookingDto.getItemId()), bookerId, now))
+                .collect(Collectors.toList());
+        if (errors.stream().allMatch(Objects::isNull)) {
+            errors = checkBatchOverlaps(bookingDtos);
         }
-        if (booking.getStatus().equals(BookingStatus.REJECTED) && approved.equals(false)) {
-            throw new ValidationException(false + " - статус уже был присвоен");
+        if (errors.stream().anyMatch(Objects::nonNull)) {
+            return errors.stream()
+                    .map(error -> new BookingBatchResultDto(null, null,
+                            error == null ? "Пакет отклонён из-за ошибок в других бронированиях" : error))
+                    .collect(Collectors.toList());
         }
 
-        if (booking.getItem().getUserId() != ownerId) {
-            throw new NoSuchElementException();
+        List<Booking> bookings = bookingDtos.stream()
+                .map(bookingDto -> bookingMapper.toBooking(bookingDto, items.get(bookingDto.getItemId()), booker))
+                .collect(Collectors.toList());
+        bookingRepository.saveAllAndFlush(bookings);
+        bookings.forEach(this::reserve);
+        return bookings.stream()
+                .map(booking -> new BookingBatchResultDto(booking.getId(), booking.getStatus(), null))
+                .collect(Collectors.toList());
+    }
+
+    @Transactional
+    @Override
+    public BookingDto updateBooking(Long ownerId, Long bookingId, Boolean approved) {
+        if (approved == null) {
+            throw new ValidationException();
         }
-        if (approved) {
-            booking.setStatus(BookingStatus.APPROVED);
+        BookingStatus status = approved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+        if (updateStatus(() -> bookingRepository.updateStatusIfWaiting(bookingId, ownerId, status,
+                BookingStatus.WAITING)) == 0) {
+            Booking booking = getBookingIfExists(bookingId);
+            if (booking.getOwnerId() == null || !booking.getOwnerId().equals(ownerId)) {
+                throw new NoSuchElementException();
+            }
+            throw new ValidationException(booking.getStatus() + " - статус уже был присвоен");
+        }
+        // ответу нужны вещь, автор и период: их нет среди известных значений, поэтому строка читается после UPDATE
+        Booking booking = getBookingIfExists(bookingId);
+        if (status == BookingStatus.REJECTED) {
+            release(booking);
         } else {
-            booking.setStatus(BookingStatus.REJECTED);
+            itemLocks.lockUntilCompletion(List.of(booking.getItem().getId()));
+            if (bookingRepository.findOverlapping(List.of(booking.getItem().getId()), APPROVED,
+                    booking.getStart(), booking.getEnd()).stream()
+                    .anyMatch(interval -> !interval.getId().equals(bookingId))) {
+                throw new ConflictException(OVERLAP);
+            }
+            summaryService.refresh(List.of(booking.getItem().getId()), LocalDateTime.now());
         }
-        bookingRepository.save(booking);
         return bookingMapper.toBookingDto(booking);
     }
 
+    @Transactional
+    @Override
+    public List<BookingBatchResultDto> updateBookings(Long ownerId, BookingBatchUpdateDto batch) {
+        if (batch.getApproved() == null || batch.getBookingIds() == null || batch.getBookingIds().isEmpty()) {
+            throw new ValidationException();
+        }
+        BookingStatus status = batch.getApproved() ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+        Map<Long, BookingDecision> decisions = InChunks.query(new TreeSet<>(batch.getBookingIds()),
+                        bookingRepository::findDecisionsForUpdate)
+                .stream()
+                .collect(Collectors.toMap(BookingDecision::getId, Function.identity()));
+
+        Set<Long> conflicts = status == BookingStatus.APPROVED
+                ? findApprovalConflicts(batch.getBookingIds().stream()
+                        .map(decisions::get)
+                        .filter(decision -> decision != null && ownerId.equals(decision.getOwnerId())
+                                && decision.getStatus() == BookingStatus.WAITING)
+                        .collect(Collectors.toList()))
+                : Set.of();
+
+        List<Long> waiting = new ArrayList<>();
+        List<BookingBatchResultDto> results = new ArrayList<>();
+        for (Long id : batch.getBookingIds()) {
+            BookingDecision decision = decisions.get(id);
+            if (decision == null || !ownerId.equals(decision.getOwnerId())) {
+                results.add(new BookingBatchResultDto(id, null, "Бронирование не найдено"));
+            } else if (decision.getStatus() != BookingStatus.WAITING) {
+                results.add(new BookingBatchResultDto(id, decision.getStatus(),
+                        decision.getStatus() + " - статус уже был присвоен"));
+            } else if (conflicts.contains(id)) {
+                results.add(new BookingBatchResultDto(id, BookingStatus.WAITING, OVERLAP));
+            } else {
+                waiting.add(id);
+                results.add(new BookingBatchResultDto(id, status, null));
+            }
+        }
+        if (!waiting.isEmpty()) {
+            updateStatus(() -> InChunks.update(waiting,
+                    chunk -> bookingRepository.updateStatusIfWaiting(chunk, ownerId, status, BookingStatus.WAITING)));
+            List<Booking> decided = InChunks.query(waiting, bookingRepository::findAllById);
+            if (status == BookingStatus.REJECTED) {
+                decided.forEach(this::release);
+            } else {
+                summaryService.refresh(decided.stream()
+                        .map(booking -> booking.getItem().getId())
+                        .collect(Collectors.toCollection(TreeSet::new)), LocalDateTime.now());
+            }
+        }
+        return results;
+    }
+
     @Override
     public BookingShortDto getById(Long userId, Long bookingId) {
         Booking booking = getBookingIfExists(bookingId);
@@ -93,191 +225,157 @@ public class BookingServiceImpl implements BookingService {
     @Override
     public List<BookingShortDto> getByUserId(Long userId, String state, Integer from, Integer size) {
         userService.findUserById(userId);
-        BookingState bookingState = BookingState.UNKNOWN;
-        List<BookingShortDto> bookingShortDto = new ArrayList<>();
-
-        if (!state.isBlank()) {
-            for (BookingState bs : BookingState.values()) {
-                if (bs.toString().equals(state)) {
-                    bookingState = bs;
-                }
-            }
-        }
-
-        Pageable pageable;
-        Sort sort = Sort.by(Sort.Direction.DESC, "start");
-        Page<Booking> page;
-        Pagination pager = new Pagination(from, size);
-
-        if (size == null) {
-            pageable =
-                    PageRequest.of(pager.getIndex(), pager.getPageSize(), sort);
-            do {
-                page = getPageBooking(state, userId, pageable);
-                try {
-                    bookingShortDto.addAll(page.stream()
-                            .map(bookingMapper::toBookingShortDto)
-                            .collect(Collectors.toList()));
-                    pageable = pageable.next();
-                } catch (NullPointerException e) {
-                    throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-                }
-
-            } while (page.hasNext());
+        Specification<Booking> spec = byBooker(userId).and(inStates(BookingState.parse(state), LocalDateTime.now()));
+        return findBookings(spec, new Pagination(from, size, BY_START_DESC));
+    }
 
-        } else {
+    @Override
+    public List<BookingShortDto> getByOwnerId(Long ownerId, String state, Integer from, Integer size) {
+        userService.findUserById(ownerId);
+        Specification<Booking> spec = byOwner(ownerId).and(inStates(BookingState.parse(state), LocalDateTime.now()));
+        return findBookings(spec, new Pagination(from, size, BY_START_DESC));
+    }
 
-            for (int i = pager.getIndex(); i < pager.getTotalPages(); i++) {
-                pageable =
-                        PageRequest.of(i, pager.getPageSize(), sort);
-                page = getPageBooking(state, userId, pageable);
-                bookingShortDto.addAll(page.stream()
-                        .map(bookingMapper::toBookingShortDto)
-                        .collect(Collectors.toList()));
-                if (!page.hasNext()) {
-                    break;
-                }
-            }
-            bookingShortDto = bookingShortDto.stream()
-                    .limit(size)
-                    .collect(Collectors.toList());
+    @Override
+    public List<BookingShortDto> getByUserIdAfter(Long userId, String state, String cursor, Integer size) {
+        if (cursor.isBlank()) {
+            return getByUserId(userId, state, 0, size);
         }
-        return bookingShortDto;
+        userService.findUserById(userId);
+        Specification<Booking> spec = byBooker(userId).and(inStates(BookingState.parse(state), LocalDateTime.now()))
+                .and(after(BookingCursor.decode(cursor)));
+        return findBookings(spec, new Pagination(0, size, BY_START_DESC));
     }
 
-    private Page<Booking> getPageBooking(String bookingState, Long userId, Pageable pageable) {
-        final LocalDateTime now = LocalDateTime.now();
-        Page<Booking> page = null;
-
-        switch (bookingState) {
-            case "ALL": {
-                page = bookingRepository.findAllBookingsByBooker(userId, pageable);
-                break;
-            }
-
-            case "CURRENT": { //findAllBookingsForBookerWithStartAndEndTime
-                page = bookingRepository.findByBookerIdAndStartIsBeforeAndEndIsAfter(userId, now, now, pageable);
-                break;
-            }
-
-            case "PAST": { //findAllByBookerIdAndEndBeforeOrderByStartDesc
-                page = bookingRepository.findByBookerIdAndEndIsBefore(userId, now, pageable);
-                break;
-            }
-
-            case "FUTURE": { //findAllByBookerIdAndStartAfterOrderByStartDesc
-                page = bookingRepository.findByBookerIdAndStartIsAfter(userId, now, pageable);
-                break;
-            }
-
-            case "REJECTED": { //findAllByBookerIdAndStatus
-                page = bookingRepository.findByBookerIdAndStatus(userId, BookingStatus.REJECTED, pageable);
-                break;
-            }
-
-            case "WAITING": { //findAllByBookerIdAndStatus
-                page = bookingRepository.findByBookerIdAndStatus(userId, BookingStatus.WAITING, pageable);
-                break;
-            }
-
-            case "UNKNOWN": {
-                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-            }
+    @Override
+    public List<BookingShortDto> getByOwnerIdAfter(Long ownerId, String state, String cursor, Integer size) {
+        if (cursor.isBlank()) {
+            return getByOwnerId(ownerId, state, 0, size);
         }
-
-        return page;
+        userService.findUserById(ownerId);
+        Specification<Booking> spec = byOwner(ownerId).and(inStates(BookingState.parse(state), LocalDateTime.now()))
+                .and(after(BookingCursor.decode(cursor)));
+        return findBookings(spec, new Pagination(0, size, BY_START_DESC));
     }
 
     @Override
-    public List<BookingShortDto> getByOwnerId(Long userId, String state, Integer from, Integer size) {
-        userService.findUserById(userId);
-        BookingState bookingState = BookingState.UNKNOWN;
-        final LocalDateTime now = LocalDateTime.now();
-        List<BookingShortDto> bookingShortDto = new ArrayList<>();
-
-        if (!state.isBlank()) {
-            for (BookingState bs : BookingState.values()) {
-                if (bs.toString().equals(state)) {
-                    bookingState = bs;
-                }
-            }
+    public long countByUserId(Long userId, String state) {
+        Set<BookingState> states = BookingState.parse(state);
+        if (states.size() > 1) {
+            return totalCountCache.get("bookings:booker:" + userId + ":" + states,
+                    () -> bookingRepository.count(byBooker(userId).and(inStates(states, LocalDateTime.now()))));
         }
+        String prefix = "bookings:booker:" + userId + ":";
+        return totalCountCache.getAll(prefix + states.iterator().next(),
+                () -> byState(prefix, bookingRepository.countStatesByBookerId(userId, LocalDateTime.now(),
+                        BookingStatus.WAITING, BookingStatus.REJECTED)));
+    }
 
-        Pageable pageable;
-        Sort sort = Sort.by(Sort.Direction.DESC, "start");
-        Page<Booking> page;
-        Pagination pager = new Pagination(from, size);
-
-        if (size == null) {
-            pageable =
-                    PageRequest.of(pager.getIndex(), pager.getPageSize(), sort);
-            do {
-                page = getPageBookingByOwner(state, userId, pageable);
-                try {
-                    bookingShortDto.addAll(page.stream()
-                            .map(bookingMapper::toBookingShortDto)
-                            .collect(Collectors.toList()));
-                    pageable = pageable.next();
-                } catch (NullPointerException e) {
-                    throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-                }
-            } while (page.hasNext());
-
-        } else {
-            for (int i = pager.getIndex(); i < pager.getTotalPages(); i++) {
-                pageable =
-                        PageRequest.of(i, pager.getPageSize(), sort);
-                page = getPageBookingByOwner(state, userId, pageable);
-                bookingShortDto.addAll(page.stream()
-                        .map(bookingMapper::toBookingShortDto)
-                        .collect(Collectors.toList()));
-                if (!page.hasNext()) {
-                    break;
-                }
-            }
-            bookingShortDto = bookingShortDto.stream().limit(size).collect(Collectors.toList());
+    @Override
+    public long countByOwnerId(Long ownerId, String state) {
+        Set<BookingState> states = BookingState.parse(state);
+        if (states.size() > 1) {
+            return totalCountCache.get("bookings:owner:" + ownerId + ":" + states,
+                    () -> bookingRepository.count(byOwner(ownerId).and(inStates(states, LocalDateTime.now()))));
         }
-        return bookingShortDto;
+        String prefix = "bookings:owner:" + ownerId + ":";
+        return totalCountCache.getAll(prefix + states.iterator().next(),
+                () -> byState(prefix, bookingRepository.countStatesByItemOwnerId(ownerId, LocalDateTime.now(),
+                        BookingStatus.WAITING, BookingStatus.REJECTED)));
     }
 
-    private Page<Booking> getPageBookingByOwner(String bookingState, Long ownerId, Pageable pageable) {
-        LocalDateTime now = LocalDateTime.now();
-        Page<Booking> page = null;
-        switch (bookingState) {
-            case "ALL": {
-                page = bookingRepository.findByItemOwnerId(ownerId, pageable);
-                break;
-            }
-            case "CURRENT": {
-                page = bookingRepository.findByItemOwnerIdAndStartIsBeforeAndEndIsAfter(ownerId, now, pageable);
-                break;
-            }
+    private static Map<String, Long> byState(String prefix, BookingStateCounts counts) {
+        Map<String, Long> result = new HashMap<>();
+        for (BookingState state : BookingState.values()) {
+            result.put(prefix + state, counts.of(state));
+        }
+        return result;
+    }
 
-            case "FUTURE": {
-                page = bookingRepository.findByItemOwnerIdAndStartIsAfter(ownerId, now, pageable);
-                break;
-            }
+    private List<BookingShortDto> findBookings(Specification<Booking> spec, Pageable pageable) {
+        return bookingRepository.findShort(spec, pageable);
+    }
 
-            case "WAITING": {
-                page = bookingRepository.findByItemOwnerIdAndStatus(ownerId, BookingStatus.WAITING, pageable);
-                break;
-            }
+    /**
+     * Пересечения с подтверждёнными бронированиями тех же вещей. Ожидающие запросы, в том числе внутри пакета,
+     * пересекаться могут.
+     */
+    private List<String> checkBatchOverlaps(List<BookingDto> bookingDtos) {
+        Set<Long> itemIds = bookingDtos.stream().map(BookingDto::getItemId).collect(Collectors.toSet());
+        LocalDateTime from = bookingDtos.stream().map(BookingDto::getStart).min(LocalDateTime::compareTo).get();
+        LocalDateTime to = bookingDtos.stream().map(BookingDto::getEnd).max(LocalDateTime::compareTo).get();
+        Map<Long, List<BookingInterval>> approved = InChunks.query(itemIds,
+                        chunk -> bookingRepository.findOverlapping(chunk, APPROVED, from, to))
+                .stream()
+                .collect(Collectors.groupingBy(BookingInterval::getItemId));
+
+        return bookingDtos.stream()
+                .map(bookingDto -> approved.getOrDefault(bookingDto.getItemId(), List.of()).stream()
+                        .anyMatch(interval -> overlaps(bookingDto.getStart(), bookingDto.getEnd(),
+                                interval.getStart(), interval.getEnd())) ? OVERLAP : null)
+                .collect(Collectors.toList());
+    }
 
-            case "REJECTED": {
-                page = bookingRepository.findByItemOwnerIdAndStatus(ownerId, BookingStatus.REJECTED, pageable);
-                break;
+    /**
+     * Бронирования, которые нельзя подтвердить: пересекаются с уже подтверждёнными или с подтверждаемыми
+     * раньше в этом же пакете. Проверка идёт под блокировками вещей, которые держатся до конца транзакции.
+     */
+    private Set<Long> findApprovalConflicts(List<BookingDecision> candidates) {
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<Long> itemIds = candidates.stream()
+                .map(BookingInterval::getItemId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        itemLocks.lockUntilCompletion(itemIds);
+        LocalDateTime from = candidates.stream().map(BookingInterval::getStart).min(LocalDateTime::compareTo).get();
+        LocalDateTime to = candidates.stream().map(BookingInterval::getEnd).max(LocalDateTime::compareTo).get();
+        Map<Long, List<BookingInterval>> taken = InChunks.query(itemIds,
+                        chunk -> bookingRepository.findOverlapping(chunk, APPROVED, from, to))
+                .stream()
+                .collect(Collectors.groupingBy(BookingInterval::getItemId));
+
+        Set<Long> conflicts = new HashSet<>();
+        for (BookingDecision candidate : candidates) {
+            List<BookingInterval> itemTaken = taken.computeIfAbsent(candidate.getItemId(), id -> new ArrayList<>());
+            if (itemTaken.stream().anyMatch(interval -> !interval.getId().equals(candidate.getId())
+                    && overlaps(candidate.getStart(), candidate.getEnd(), interval.getStart(), interval.getEnd()))) {
+                conflicts.add(candidate.getId());
+            } else {
+                itemTaken.add(candidate);
             }
+        }
+        return conflicts;
+    }
 
-            case "PAST": {
-                page = bookingRepository.findByItemOwnerIdAndEndIsBefore(ownerId, now, pageable);
-                break;
-            }
+    private static boolean overlaps(LocalDateTime start, LocalDateTime end,
+                                    LocalDateTime otherStart, LocalDateTime otherEnd) {
+        return start.isBefore(otherEnd) && otherStart.isBefore(end);
+    }
 
-            case "UNKNOWN": {
-                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
+    /**
+     * В PostgreSQL подтверждение, пересечение которого пропустила проверка (другой экземпляр приложения),
+     * отклоняет ограничение ex_bookings_item_approved_period.
+     */
+    private int updateStatus(IntSupplier update) {
+        try {
+            return update.getAsInt();
+        } catch (DataIntegrityViolationException e) {
+            if (e.getMostSpecificCause() instanceof SQLException
+                    && EXCLUSION_VIOLATION.equals(((SQLException) e.getMostSpecificCause()).getSQLState())) {
+                throw new ConflictException(OVERLAP);
             }
+            throw e;
         }
-        return page;
+    }
+
+    private void reserve(Booking booking) {
+        intervalIndex.reserve(booking.getItem().getId(), booking.getId(), booking.getStart(), booking.getEnd());
+        suggestIndex.itemBooked(booking.getItem().getId());
+    }
+
+    private void release(Booking booking) {
+        intervalIndex.release(booking.getItem().getId(), booking.getId(), booking.getStart(), booking.getEnd());
     }
 
     private Booking getBookingIfExists(Long id) {
@@ -300,15 +398,38 @@ public class BookingServiceImpl implements BookingService {
         }
     }
 
-    private void checkItemIsAvailable(long itemId, long userId) {
-        Item item;
-        try {
-            item = itemService.findItemById(itemId, userId);
-            if (!item.getAvailable()) {
-                throw new ValidationException();
-            }
-        } catch (NullPointerException e) {
+    private String checkBatchEntry(BookingDto bookingDto, Item item, Long bookerId, LocalDateTime now) {
+        if (bookingDto.getStart() == null || bookingDto.getEnd() == null
+                || !bookingDto.getStart().isBefore(bookingDto.getEnd()) || bookingDto.getStart().isBefore(now)) {
+            return "Некорректное время бронирования";
+        }
+        if (item == null) {
+            return "Вещь не найдена";
+        }
+        if (item.getUserId() == bookerId) {
+            return "Владелец вещи не может бронировать свою вещь";
+        }
+        if (!item.getAvailable()) {
+            return "Вещь недоступна для бронирования";
+        }
+        return null;
+    }
+
+    /**
+     * Вещь для нового бронирования читается из базы, а не из кэша вещей: доступность и владелец должны быть
+     * актуальны на момент записи. Строка вещи блокируется до конца транзакции, как в createBookings.
+     */
+    private Item lockAvailableItem(Long itemId) {
+        if (itemId == null) {
+            throw new ValidationException();
+        }
+        itemLocks.lockUntilCompletion(List.of(itemId));
+        Item item = itemRepository.findAllByIdForUpdate(List.of(itemId)).stream()
+                .findFirst()
+                .orElseThrow(NoSuchElementException::new);
+        if (!Boolean.TRUE.equals(item.getAvailable())) {
             throw new ValidationException();
         }
+        return item;
     }
 }
@@ -0,0 +1,72 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Условия выборки бронирований. Каждое состояние BookingState превращается в предикат здесь и только здесь,
+ * несколько состояний объединяются через OR в одном запросе.
+ * CURRENT, PAST и FUTURE ищутся по равенству phase; сравнение со временем добавляется только для строк,
+ * которые BookingPhaseScheduler ещё не успел перевести, так что результат точный при любом отставании.
+ */
+public final class BookingSpecifications {
+
+    private BookingSpecifications() {
+    }
+
+    public static Specification<Booking> byBooker(Long bookerId) {
+        return (root, query, cb) -> cb.equal(root.get("booker").get("id"), bookerId);
+    }
+
+    public static Specification<Booking> byOwner(Long ownerId) {
+        return (root, query, cb) -> cb.equal(root.get("ownerId"), ownerId);
+    }
+
+    public static Specification<Booking> inStates(Set<BookingState> states, LocalDateTime now) {
+        return (root, query, cb) -> {
+            if (states.contains(BookingState.ALL)) {
+                return cb.conjunction();
+            }
+            return cb.or(states.stream()
+                    .map(state -> toPredicate(state, root, cb, now))
+                    .toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Бронирования строго после позиции курсора в порядке "start DESC, id DESC".
+     */
+    public static Specification<Booking> after(BookingCursor cursor) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("start"), cursor.getStart()),
+                cb.and(cb.equal(root.get("start"), cursor.getStart()),
+                        cb.lessThan(root.get("id"), cursor.getId())));
+    }
+
+    private static Predicate toPredicate(BookingState state, Root<Booking> root, CriteriaBuilder cb,
+                                         LocalDateTime now) {
+        switch (state) {
+            case CURRENT:
+                return cb.and(cb.greaterThan(root.get("end"), now), cb.or(
+                        cb.equal(root.get("phase"), BookingPhase.CURRENT),
+                        cb.and(cb.equal(root.get("phase"), BookingPhase.FUTURE), cb.lessThan(root.get("start"), now))));
+            case PAST:
+                return cb.or(cb.equal(root.get("phase"), BookingPhase.PAST),
+                        cb.and(root.get("phase").in(BookingPhase.FUTURE, BookingPhase.CURRENT),
+                                cb.lessThan(root.get("end"), now)));
+            case FUTURE:
+                return cb.and(cb.equal(root.get("phase"), BookingPhase.FUTURE), cb.greaterThan(root.get("start"), now));
+            case WAITING:
+                return cb.equal(root.get("status"), BookingStatus.WAITING);
+            case REJECTED:
+                return cb.equal(root.get("status"), BookingStatus.REJECTED);
+            default:
+                return cb.conjunction();
+        }
+    }
+}
@@ -1,11 +1,29 @@
 package ru.practicum.shareit.booking;
 
+import javax.validation.ValidationException;
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum BookingState {
     ALL,
     CURRENT,
     PAST,
     FUTURE,
     WAITING,
-    REJECTED,
-    UNKNOWN
+    REJECTED;
+
+    /**
+     * Разбирает параметр state: одно состояние или несколько через запятую, например "CURRENT,FUTURE".
+     */
+    public static Set<BookingState> parse(String states) {
+        Set<BookingState> result = EnumSet.noneOf(BookingState.class);
+        for (String state : states.split(",")) {
+            try {
+                result.add(BookingState.valueOf(state.trim()));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
+            }
+        }
+        return result;
+    }
 }
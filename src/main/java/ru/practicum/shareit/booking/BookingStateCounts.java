@@ -0,0 +1,32 @@
+package ru.practicum.shareit.booking;
+
+public interface BookingStateCounts {
+    long getTotal();
+
+    long getCurrentCount();
+
+    long getPastCount();
+
+    long getFutureCount();
+
+    long getWaitingCount();
+
+    long getRejectedCount();
+
+    default long of(BookingState state) {
+        switch (state) {
+            case CURRENT:
+                return getCurrentCount();
+            case PAST:
+                return getPastCount();
+            case FUTURE:
+                return getFutureCount();
+            case WAITING:
+                return getWaitingCount();
+            case REJECTED:
+                return getRejectedCount();
+            default:
+                return getTotal();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.shareit.booking;
+
+public interface ItemBookingCount {
+    Long getItemId();
+
+    long getBookings();
+}
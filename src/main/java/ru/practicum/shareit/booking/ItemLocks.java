@@ -0,0 +1,49 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.Transactions;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Полосатые блокировки по id вещи: подтверждение бронирования с проверкой пересечения с уже подтверждёнными
+ * и чтение вещи для нового бронирования выполняются под блокировкой, которая держится до конца транзакции.
+ * Разные вещи почти всегда попадают в разные полосы и не ждут друг друга.
+ * Защищает только в пределах одного экземпляра приложения, поэтому для PostgreSQL выключается
+ * (shareit.booking.overlap-lock=false) в пользу ограничения EXCLUDE.
+ */
+@Component
+public class ItemLocks {
+    private static final int STRIPES = 256;
+
+    private final boolean enabled;
+    private final List<ReentrantLock> stripes = IntStream.range(0, STRIPES)
+            .mapToObj(i -> new ReentrantLock())
+            .collect(Collectors.toList());
+
+    public ItemLocks(@Value("${shareit.booking.overlap-lock:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Берёт блокировки вещей в порядке номеров полос, чтобы две транзакции не ждали друг друга по кругу.
+     */
+    public void lockUntilCompletion(Collection<Long> itemIds) {
+        if (!enabled) {
+            return;
+        }
+        SortedSet<Integer> indexes = itemIds.stream()
+                .map(id -> Math.floorMod(Long.hashCode(id), STRIPES))
+                .collect(Collectors.toCollection(TreeSet::new));
+        indexes.forEach(index -> stripes.get(index).lock());
+        Runnable unlock = () -> indexes.forEach(index -> stripes.get(index).unlock());
+        Transactions.afterCompletion(unlock, unlock);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.item.dto.TimeSlotDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок занятости одной вещи начиная с момента since: закончившиеся раньше бронирования
+ * в нём не хранятся. Бронирования хранятся по id, чтобы добавление и удаление были идемпотентными,
+ * а для поиска они слиты в отсортированные непересекающиеся отрезки занятости.
+ */
+final class ItemTimeline {
+    private final Map<Long, LocalDateTime[]> bookings;
+    private final LocalDateTime since;
+    private final LocalDateTime[] busyStarts;
+    private final LocalDateTime[] busyEnds;
+
+    private ItemTimeline(Map<Long, LocalDateTime[]> bookings, LocalDateTime since) {
+        this.bookings = bookings;
+        this.since = since;
+        LocalDateTime[][] sorted = bookings.values().stream()
+                .sorted(Comparator.comparing((LocalDateTime[] interval) -> interval[0]))
+                .toArray(LocalDateTime[][]::new);
+        List<LocalDateTime> starts = new ArrayList<>();
+        List<LocalDateTime> ends = new ArrayList<>();
+        for (LocalDateTime[] interval : sorted) {
+            int last = ends.size() - 1;
+            if (last >= 0 && !interval[0].isAfter(ends.get(last))) {
+                if (interval[1].isAfter(ends.get(last))) {
+                    ends.set(last, interval[1]);
+                }
+            } else {
+                starts.add(interval[0]);
+                ends.add(interval[1]);
+            }
+        }
+        this.busyStarts = starts.toArray(LocalDateTime[]::new);
+        this.busyEnds = ends.toArray(LocalDateTime[]::new);
+    }
+
+    static ItemTimeline of(List<BookingInterval> intervals, LocalDateTime since) {
+        Map<Long, LocalDateTime[]> bookings = new HashMap<>();
+        for (BookingInterval interval : intervals) {
+            bookings.put(interval.getId(), new LocalDateTime[]{interval.getStart(), interval.getEnd()});
+        }
+        return new ItemTimeline(bookings, since);
+    }
+
+    /**
+     * Снимок с новым бронированием. Заодно сдвигает since к now и выбрасывает закончившиеся бронирования,
+     * чтобы снимок часто бронируемой вещи не рос без предела.
+     */
+    ItemTimeline with(long bookingId, LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        LocalDateTime horizon = now.isAfter(since) ? now : since;
+        Map<Long, LocalDateTime[]> copy = new HashMap<>();
+        bookings.forEach((id, interval) -> {
+            if (interval[1].isAfter(horizon)) {
+                copy.put(id, interval);
+            }
+        });
+        copy.put(bookingId, new LocalDateTime[]{start, end});
+        return new ItemTimeline(copy, horizon);
+    }
+
+    ItemTimeline without(long bookingId) {
+        if (!bookings.containsKey(bookingId)) {
+            return this;
+        }
+        Map<Long, LocalDateTime[]> copy = new HashMap<>(bookings);
+        copy.remove(bookingId);
+        return new ItemTimeline(copy, since);
+    }
+
+    /**
+     * Снимок отвечает только за окна, которые начинаются не раньше since.
+     */
+    boolean covers(LocalDateTime from) {
+        return !from.isBefore(since);
+    }
+
+    /**
+     * Свободные промежутки внутри [from, to): двоичный поиск первого отрезка занятости, который
+     * заканчивается после from, и проход по k отрезкам, пересекающим окно.
+     */
+    List<TimeSlotDto> freeSlots(LocalDateTime from, LocalDateTime to) {
+        int index = firstEndingAfter(from);
+        LocalDateTime cursor = from;
+        List<TimeSlotDto> slots = new ArrayList<>();
+        for (int i = index; i < busyStarts.length && busyStarts[i].isBefore(to); i++) {
+            if (busyStarts[i].isAfter(cursor)) {
+                slots.add(new TimeSlotDto(cursor, busyStarts[i]));
+            }
+            if (busyEnds[i].isAfter(cursor)) {
+                cursor = busyEnds[i];
+            }
+        }
+        if (cursor.isBefore(to)) {
+            slots.add(new TimeSlotDto(cursor, to));
+        }
+        return slots;
+    }
+
+    private int firstEndingAfter(LocalDateTime from) {
+        int index = Arrays.binarySearch(busyEnds, from);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.shareit.booking.BookingStatus;
+
+/**
+ * Итог по одному бронированию из пакетного запроса: новый статус или причина отказа.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingBatchResultDto {
+    private Long bookingId;
+    private BookingStatus status;
+    private String error;
+}
@@ -4,12 +4,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingPhase;
 import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.summary.ItemBookingSummary;
 import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserMapper;
+import ru.practicum.shareit.user.model.User;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.NoSuchElementException;
 
 @Slf4j
@@ -34,24 +40,44 @@ public class BookingMapper {
     }
 
     public Booking toBooking(BookingDto bookingDto) {
-        Booking booking = new Booking();
-        booking.setStart(bookingDto.getStart());
-        booking.setEnd(bookingDto.getEnd());
-
-        if (itemRepository.findById(bookingDto.getItemId()).isEmpty()) {
-            throw new NoSuchElementException();
-        }
+        // бронирование создаётся по актуальной вещи из базы, кэш вещей только для чтения
+        Item item = itemRepository.findById(bookingDto.getItemId()).orElseThrow(NoSuchElementException::new);
+        return toBooking(bookingDto, item, userService.findUserById(bookingDto.getUserId()));
+    }
 
-        booking.setItem(itemRepository.findById(bookingDto.getItemId()).get());
-        booking.setBooker(userService.findUserById(bookingDto.getUserId()));
+    public Booking toBooking(BookingDto bookingDto, Item item, User booker) {
+        Booking booking = new Booking();
+        booking.setStart(bookingDto.getStart().truncatedTo(ChronoUnit.MICROS));
+        booking.setEnd(bookingDto.getEnd().truncatedTo(ChronoUnit.MICROS));
+        booking.setItem(item);
+        booking.setOwnerId(item.getUserId());
+        booking.setBooker(booker);
         booking.setStatus(BookingStatus.WAITING);
+        booking.setPhase(BookingPhase.of(booking.getStart(), booking.getEnd(), LocalDateTime.now()));
 
         return booking;
     }
 
+    public BookingShortDto toLastBookingDto(ItemBookingSummary summary, Item item) {
+        if (summary == null || summary.getLastBookingId() == null) {
+            return null;
+        }
+        return new BookingShortDto(summary.getLastBookingId(), summary.getLastStart(), summary.getLastEnd(),
+                item.getId(), item.getName(), summary.getLastBookerId(), BookingStatus.APPROVED);
+    }
+
+    public BookingShortDto toNextBookingDto(ItemBookingSummary summary, Item item) {
+        if (summary == null || summary.getNextBookingId() == null) {
+            return null;
+        }
+        return new BookingShortDto(summary.getNextBookingId(), summary.getNextStart(), summary.getNextEnd(),
+                item.getId(), item.getName(), summary.getNextBookerId(), BookingStatus.APPROVED);
+    }
+
     public BookingShortDto toBookingShortDto(Booking booking) {
-        return new BookingShortDto(booking.getId(), booking.getStart(), booking.getEnd(), booking.getItem(),
-                UserMapper.toUserDtoShort(booking.getBooker()), booking.getBooker().getId(), booking.getStatus());
+        return new BookingShortDto(booking.getId(), booking.getStart(), booking.getEnd(),
+                booking.getItem().getId(), booking.getItem().getName(), booking.getBooker().getId(),
+                booking.getStatus());
 
     }
 }
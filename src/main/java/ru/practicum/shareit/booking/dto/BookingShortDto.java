@@ -4,7 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import ru.practicum.shareit.booking.BookingStatus;
-import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
 import ru.practicum.shareit.user.dto.UserDtoShort;
 
 import java.time.LocalDateTime;
@@ -16,9 +16,16 @@ public class BookingShortDto {
     private Long id;
     private LocalDateTime start;
     private LocalDateTime end;
-    private Item item;
+    private ItemDtoShort item;
     private UserDtoShort booker;
     private Long bookerId;
     private BookingStatus status;
 
+    /**
+     * Конструктор для проекции в запросах списков: только поля, которые отдаёт API.
+     */
+    public BookingShortDto(Long id, LocalDateTime start, LocalDateTime end, Long itemId, String itemName,
+                           Long bookerId, BookingStatus status) {
+        this(id, start, end, new ItemDtoShort(itemId, itemName), new UserDtoShort(bookerId), bookerId, status);
+    }
 }
@@ -0,0 +1,128 @@
+package ru.practicum.shareit.booking.summary;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Последнее (уже начавшееся) и ближайшее будущее подтверждённое бронирование вещи.
+ * Строка устаревает, когда наступает nextStart или stale = true; такие строки пересчитывает ItemBookingSummaryService.
+ */
+@Entity
+@Table(name = "item_booking_summary")
+public class ItemBookingSummary {
+
+    public ItemBookingSummary(long itemId) {
+        this.itemId = itemId;
+    }
+
+    public ItemBookingSummary() {
+
+    }
+
+    @Id
+    @Column(name = "item_id")
+    private long itemId;
+
+    @Column(name = "last_booking_id")
+    private Long lastBookingId;
+
+    @Column(name = "last_booker_id")
+    private Long lastBookerId;
+
+    @Column(name = "last_start")
+    private LocalDateTime lastStart;
+
+    @Column(name = "last_end")
+    private LocalDateTime lastEnd;
+
+    @Column(name = "next_booking_id")
+    private Long nextBookingId;
+
+    @Column(name = "next_booker_id")
+    private Long nextBookerId;
+
+    @Column(name = "next_start")
+    private LocalDateTime nextStart;
+
+    @Column(name = "next_end")
+    private LocalDateTime nextEnd;
+
+    @Column(name = "stale")
+    private boolean stale;
+
+    public boolean isStale(LocalDateTime now) {
+        return stale || nextStart != null && !nextStart.isAfter(now);
+    }
+
+    void setLast(SummaryBooking booking) {
+        lastBookingId = booking == null ? null : booking.getId();
+        lastBookerId = booking == null ? null : booking.getBookerId();
+        lastStart = booking == null ? null : booking.getStart();
+        lastEnd = booking == null ? null : booking.getEnd();
+    }
+
+    void setNext(SummaryBooking booking) {
+        nextBookingId = booking == null ? null : booking.getId();
+        nextBookerId = booking == null ? null : booking.getBookerId();
+        nextStart = booking == null ? null : booking.getStart();
+        nextEnd = booking == null ? null : booking.getEnd();
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public Long getLastBookingId() {
+        return lastBookingId;
+    }
+
+    public Long getLastBookerId() {
+        return lastBookerId;
+    }
+
+    public LocalDateTime getLastStart() {
+        return lastStart;
+    }
+
+    public LocalDateTime getLastEnd() {
+        return lastEnd;
+    }
+
+    public Long getNextBookingId() {
+        return nextBookingId;
+    }
+
+    public Long getNextBookerId() {
+        return nextBookerId;
+    }
+
+    public LocalDateTime getNextStart() {
+        return nextStart;
+    }
+
+    public LocalDateTime getNextEnd() {
+        return nextEnd;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemBookingSummary{" +
+                "itemId=" + itemId +
+                ", lastBookingId=" + lastBookingId +
+                ", nextBookingId=" + nextBookingId +
+                ", nextStart=" + nextStart +
+                ", stale=" + stale +
+                '}';
+    }
+}
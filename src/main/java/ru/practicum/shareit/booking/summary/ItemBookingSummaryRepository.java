@@ -0,0 +1,43 @@
+package ru.practicum.shareit.booking.summary;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.BookingStatus;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ItemBookingSummaryRepository extends JpaRepository<ItemBookingSummary, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ItemBookingSummary s where s.itemId in :itemIds order by s.itemId")
+    List<ItemBookingSummary> findAllForUpdate(@Param("itemIds") Collection<Long> itemIds);
+
+    @Query("select s.itemId from ItemBookingSummary s where s.stale = true or s.nextStart <= :now")
+    List<Long> findStaleItemIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("update ItemBookingSummary s set s.stale = true where s.lastBookerId = :bookerId or s.nextBookerId = :bookerId")
+    int markStaleByBooker(@Param("bookerId") Long bookerId);
+
+    /**
+     * Последнее начавшееся и ближайшее будущее бронирование каждой вещи одним запросом: обе строки вещи
+     * выбираются по началу, равному крайнему значению в её подзапросе.
+     */
+    @Query("select b.item.id as itemId, b.id as id, b.booker.id as bookerId, b.start as start, b.end as end" +
+            " from Booking b where b.item.id in :itemIds and b.status = :status" +
+            " and (b.start = (select max(l.start) from Booking l" +
+            " where l.item.id = b.item.id and l.status = :status and l.start <= :now)" +
+            " or b.start = (select min(n.start) from Booking n" +
+            " where n.item.id = b.item.id and n.status = :status and n.start > :now))" +
+            " order by b.id")
+    List<ItemSummaryBooking> findLastAndNext(@Param("itemIds") Collection<Long> itemIds,
+                                             @Param("status") BookingStatus status,
+                                             @Param("now") LocalDateTime now);
+}
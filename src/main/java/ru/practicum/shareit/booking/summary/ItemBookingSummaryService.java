@@ -0,0 +1,157 @@
+package ru.practicum.shareit.booking.summary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.InChunks;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.user.UserDeletedEvent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Сводка по бронированиям вещи для карточки владельца. Пересчитывается по одной вещи при подтверждении
+ * бронирования, а по мере хода времени - пачками по расписанию. Пока планировщик не дошёл до устаревшей
+ * строки, чтение пересчитывает её в памяти, так что ответ не зависит от его отставания. Пересчёт любого числа
+ * вещей - один запрос на каждую часть из InChunks.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class ItemBookingSummaryService {
+    private final ItemBookingSummaryRepository summaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Pageable batch;
+
+    public ItemBookingSummaryService(ItemBookingSummaryRepository summaryRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${shareit.booking.phase.batch-size:500}") int batchSize) {
+        this.summaryRepository = summaryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batch = PageRequest.of(0, batchSize, Sort.by("itemId"));
+    }
+
+    @Transactional
+    public void create(long itemId) {
+        summaryRepository.save(new ItemBookingSummary(itemId));
+    }
+
+    public Map<Long, ItemBookingSummary> findByItemIds(Collection<Long> itemIds, LocalDateTime now) {
+        if (itemIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, ItemBookingSummary> summaries = InChunks.query(itemIds, summaryRepository::findAllById).stream()
+                .collect(Collectors.toMap(ItemBookingSummary::getItemId, Function.identity()));
+        return actual(itemIds, summaries, now);
+    }
+
+    /**
+     * Сводки вещей по строкам, прочитанным вместе с ними (read может не содержать вещь); отсутствующие
+     * и устаревшие пересчитываются без записи, все вместе.
+     */
+    public Map<Long, ItemBookingSummary> actual(Collection<Long> itemIds, Map<Long, ItemBookingSummary> read,
+                                                LocalDateTime now) {
+        Map<Long, ItemBookingSummary> summaries = new HashMap<>();
+        List<ItemBookingSummary> stale = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            ItemBookingSummary summary = read.get(itemId);
+            if (summary == null || summary.isStale(now)) {
+                summary = new ItemBookingSummary(itemId);
+                stale.add(summary);
+            }
+            summaries.put(itemId, summary);
+        }
+        compute(stale, now);
+        return summaries;
+    }
+
+    /**
+     * Пересчитывает сводки вещей под блокировкой строк, чтобы одновременные подтверждения не затёрли друг друга.
+     */
+    @Transactional
+    public void refresh(Collection<Long> itemIds, LocalDateTime now) {
+        Map<Long, ItemBookingSummary> summaries = InChunks.query(itemIds, summaryRepository::findAllForUpdate).stream()
+                .collect(Collectors.toMap(ItemBookingSummary::getItemId, Function.identity()));
+        List<ItemBookingSummary> refreshed = itemIds.stream()
+                .map(itemId -> summaries.getOrDefault(itemId, new ItemBookingSummary(itemId)))
+                .collect(Collectors.toList());
+        compute(refreshed, now);
+        summaryRepository.saveAll(refreshed);
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking.phase.interval:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void refreshStale() {
+        int refreshed = refreshStale(LocalDateTime.now());
+        if (refreshed > 0) {
+            log.info("Пересчитано сводок бронирований: {}", refreshed);
+        }
+    }
+
+    /**
+     * Возвращает число пересчитанных сводок. Каждая пачка пишется в своей транзакции, поэтому метод
+     * не присоединяется к транзакции класса (только для чтения, в ней пересчёт не сохранился бы).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int refreshStale(LocalDateTime now) {
+        int refreshed = 0;
+        int batchRefreshed;
+        do {
+            Integer count = transactionTemplate.execute(status -> {
+                List<Long> itemIds = summaryRepository.findStaleItemIds(now, batch);
+                if (!itemIds.isEmpty()) {
+                    refresh(itemIds, now);
+                }
+                return itemIds.size();
+            });
+            batchRefreshed = count == null ? 0 : count;
+            refreshed += batchRefreshed;
+        } while (batchRefreshed == batch.getPageSize());
+        return refreshed;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onUserDeleted(UserDeletedEvent event) {
+        // бронирования пользователя удалены каскадом, сводки с ними пересчитает планировщик
+        summaryRepository.markStaleByBooker(event.getUserId());
+    }
+
+    private void compute(List<ItemBookingSummary> summaries, LocalDateTime now) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+        Map<Long, ItemBookingSummary> byItemId = summaries.stream()
+                .collect(Collectors.toMap(ItemBookingSummary::getItemId, Function.identity()));
+        byItemId.values().forEach(summary -> {
+            summary.setLast(null);
+            summary.setNext(null);
+            summary.setStale(false);
+        });
+        // подтверждённые бронирования одной вещи не пересекаются, поэтому начала в выборке у вещи разные
+        for (ItemSummaryBooking booking : InChunks.query(byItemId.keySet(),
+                chunk -> summaryRepository.findLastAndNext(chunk, BookingStatus.APPROVED, now))) {
+            ItemBookingSummary summary = byItemId.get(booking.getItemId());
+            if (booking.getStart().isAfter(now)) {
+                summary.setNext(booking);
+            } else {
+                summary.setLast(booking);
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package ru.practicum.shareit.booking.summary;
+
+public interface ItemSummaryBooking extends SummaryBooking {
+    Long getItemId();
+}
@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking.summary;
+
+import java.time.LocalDateTime;
+
+public interface SummaryBooking {
+    Long getId();
+
+    Long getBookerId();
+
+    LocalDateTime getStart();
+
+    LocalDateTime getEnd();
+}
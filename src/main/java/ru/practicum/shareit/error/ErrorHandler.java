@@ -5,6 +5,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.practicum.shareit.error.model.ConflictException;
 import ru.practicum.shareit.error.model.ErrorResponse;
 
 import javax.validation.ValidationException;
@@ -31,6 +32,12 @@ public class ErrorHandler {
         return new ErrorResponse("400 - Ошибка валидации");
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleConflict(final ConflictException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
     /*@ExceptionHandler
     @ResponseStatus(HttpStatus.CONFLICT)
     public ErrorResponse validationConflict(final MethodArgumentNotValidException e) {
@@ -0,0 +1,65 @@
+package ru.practicum.shareit.item;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.Transactions;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserDeletedEvent;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Кэш вещей по id перед ItemRepository, ограничен размером и временем жизни. Наружу отдаются копии: изменение
+ * полученной вещи не попадает ни в кэш, ни в базу. Запись вещи сбрасывает её сразу и ещё раз после завершения
+ * транзакции, как в SearchResultCache. Вещи удалённого пользователя уходят из кэша вместе с ним.
+ * Сброс видит только записи этого экземпляра приложения: изменения с других экземпляров доходят сюда
+ * не позже чем через ttl.
+ * Попадания и промахи видны в метриках cache.gets с тегом cache=items.
+ */
+@Component
+public class ItemCache {
+    public static final String NAME = "items";
+
+    private final Cache<Long, Item> items;
+    private final ItemRepository itemRepository;
+
+    public ItemCache(ItemRepository itemRepository,
+                     @Value("${shareit.item.cache.ttl:30s}") Duration ttl,
+                     @Value("${shareit.item.cache.max-size:10000}") long maxSize,
+                     MeterRegistry meterRegistry) {
+        this.itemRepository = itemRepository;
+        this.items = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, items, NAME);
+    }
+
+    public Optional<Item> find(long id) {
+        // отсутствующие вещи не кэшируются: loader, вернувший null, ничего не кладёт
+        return Optional.ofNullable(items.get(id, key -> itemRepository.findById(key).map(ItemCache::copy).orElse(null)))
+                .map(ItemCache::copy);
+    }
+
+    public void itemChanged(long id) {
+        items.invalidate(id);
+        Transactions.afterCompletion(() -> items.invalidate(id), () -> items.invalidate(id));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        items.asMap().values().removeIf(item -> item.getUserId() == event.getUserId());
+    }
+
+    private static Item copy(Item item) {
+        return new Item(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                item.getUserId(), item.getRequestId());
+    }
+}
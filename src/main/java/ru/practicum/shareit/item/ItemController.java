@@ -2,16 +2,22 @@ package ru.practicum.shareit.item;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import ru.practicum.shareit.TotalCountCache;
 import ru.practicum.shareit.item.comment.Comment;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.model.Item;
 
 import javax.validation.Valid;
 import javax.validation.ValidationException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -27,11 +33,19 @@ public class ItemController {
     }
 
     @GetMapping
-    public List<ItemDto> findAllItems(@RequestHeader("x-sharer-user-id") long sharerUserId,
+    public ResponseEntity<List<ItemDto>> findAllItems(@RequestHeader("x-sharer-user-id") long sharerUserId,
                                       @RequestParam(defaultValue = "0") Integer from,
-                                      @RequestParam(required = false) Integer size) {
+                                      @RequestParam(required = false) Integer size,
+                                      @RequestHeader(value = TotalCountCache.REQUEST_HEADER,
+                                              defaultValue = "false") boolean includeTotal) {
         log.info("Получен запрос на получение списка предметов владельца " + sharerUserId);
-        return itemService.getItemsByOwner(sharerUserId, from, size);
+        List<ItemDto> items = itemService.getItemsByOwner(sharerUserId, from, size);
+        if (includeTotal) {
+            return ResponseEntity.ok()
+                    .header(TotalCountCache.RESPONSE_HEADER, String.valueOf(itemService.countItemsByOwner(sharerUserId)))
+                    .body(items);
+        }
+        return ResponseEntity.ok(items);
     }
 
     @GetMapping("/{id}")
@@ -43,11 +57,56 @@ public class ItemController {
         return itemService.findItemDtoById(id, sharerUserId);
     }
 
+    @GetMapping("/{id}/availability")
+    public List<TimeSlotDto> getAvailability(@PathVariable long id,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                             LocalDateTime from,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                             LocalDateTime to) {
+        log.info(String.format("Получен запрос на свободное время вещи %s с %s по %s", id, from, to));
+        return itemService.getAvailability(id, from, to);
+    }
+
     @GetMapping("/search")
-    public List<Item> searchByText(@RequestParam String text,
+    public ResponseEntity<List<Item>> searchByText(@RequestParam String text,
+                                   @RequestParam(defaultValue = "false") boolean fuzzy,
+                                   @RequestParam(required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+                                   @RequestParam(required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
                                    @RequestParam(defaultValue = "0") Integer from,
-                                   @RequestParam(required = false) Integer size) {
-        return itemService.searchByText(text, from, size);
+                                   @RequestParam(required = false) Integer size,
+                                   @RequestHeader(value = TotalCountCache.REQUEST_HEADER,
+                                           defaultValue = "false") boolean includeTotal) {
+        if (start != null || end != null) {
+            if (fuzzy) {
+                throw new ValidationException("Нечёткий поиск не сочетается с поиском по периоду");
+            }
+            List<Item> items = itemService.searchFree(text, start, end, from, size);
+            if (includeTotal) {
+                return ResponseEntity.ok()
+                        .header(TotalCountCache.RESPONSE_HEADER,
+                                String.valueOf(itemService.countFreeSearchResults(text, start, end)))
+                        .body(items);
+            }
+            return ResponseEntity.ok(items);
+        }
+        List<Item> items = fuzzy ? itemService.searchFuzzy(text, from, size)
+                : itemService.searchByText(text, from, size);
+        if (includeTotal) {
+            long total = fuzzy ? itemService.countFuzzySearchResults(text) : itemService.countSearchResults(text);
+            return ResponseEntity.ok()
+                    .header(TotalCountCache.RESPONSE_HEADER, String.valueOf(total))
+                    .body(items);
+        }
+        return ResponseEntity.ok(items);
+    }
+
+    @GetMapping("/suggest")
+    public List<ItemDtoShort> suggest(@RequestParam String prefix,
+                                      @RequestParam(defaultValue = "10") int size) {
+        log.info(String.format("Получен запрос на подсказки названий вещей по префиксу: '%s'", prefix));
+        return itemService.suggest(prefix, size);
     }
 
     @PostMapping
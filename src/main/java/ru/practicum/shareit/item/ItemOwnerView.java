@@ -0,0 +1,15 @@
+package ru.practicum.shareit.item;
+
+import ru.practicum.shareit.booking.summary.ItemBookingSummary;
+import ru.practicum.shareit.item.model.Item;
+
+/**
+ * Строка списка вещей владельца: вещь, её сводка бронирований (может отсутствовать) и число отзывов.
+ */
+public interface ItemOwnerView {
+    Item getItem();
+
+    ItemBookingSummary getSummary();
+
+    long getCommentCount();
+}
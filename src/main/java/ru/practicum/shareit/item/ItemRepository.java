@@ -1,24 +1,80 @@
 package ru.practicum.shareit.item;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ItemRepository extends PagingAndSortingRepository<Item, Long> {
-    Page<Item> findByUserId(Long userId, Pageable pageable);
+    String FREE_IN_PERIOD = " and not exists (select b.id from Booking b where b.item = i and b.status = :status" +
+            " and b.start < :end and b.end > :start) ";
+
+    long countByUserId(Long userId);
+
+    List<Item> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    /**
+     * Вещи владельца вместе со сводкой бронирований и числом отзывов одним запросом.
+     */
+    @Query("select i as item, s as summary," +
+            " (select count(c) from Comment c where c.item = i) as commentCount" +
+            " from Item i left join ItemBookingSummary s on s.itemId = i.id" +
+            " where i.userId = :userId")
+    List<ItemOwnerView> findOwnerViews(@Param("userId") Long userId, Pageable pageable);
 
     @Query("select i from Item i " +
-            "where lower(i.name) like lower(concat('%', :search, '%')) " +
-            " or lower(i.description) like lower(concat('%', :search, '%')) " +
-            " and i.available = true")
-    Page<Item> getItemsBySearchQuery(@Param("search") String text, Pageable pageable);
+            "where i.available = true " +
+            " and (lower(i.name) like lower(concat('%', :search, '%')) " +
+            "  or lower(i.description) like lower(concat('%', :search, '%'))) " +
+            "order by case when lower(i.name) like lower(concat('%', :search, '%')) then 0 else 1 end, i.id")
+    List<Item> getItemsBySearchQuery(@Param("search") String text, Pageable pageable);
+
+    @Query("select count(i) from Item i " +
+            "where i.available = true " +
+            " and (lower(i.name) like lower(concat('%', :search, '%')) " +
+            "  or lower(i.description) like lower(concat('%', :search, '%')))")
+    long countBySearchQuery(@Param("search") String text);
+
+    /**
+     * Поиск среди вещей без подтверждённых бронирований, пересекающих период [start, end).
+     * Проверка - антисоединение в том же запросе, по индексу бронирований вещи по статусу и началу.
+     */
+    @Query("select i from Item i " +
+            "where i.available = true " +
+            " and (lower(i.name) like lower(concat('%', :search, '%')) " +
+            "  or lower(i.description) like lower(concat('%', :search, '%'))) " +
+            FREE_IN_PERIOD +
+            "order by case when lower(i.name) like lower(concat('%', :search, '%')) then 0 else 1 end, i.id")
+    List<Item> getFreeItemsBySearchQuery(@Param("search") String text, @Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end, @Param("status") BookingStatus status,
+                                         Pageable pageable);
+
+    @Query("select count(i) from Item i " +
+            "where i.available = true " +
+            " and (lower(i.name) like lower(concat('%', :search, '%')) " +
+            "  or lower(i.description) like lower(concat('%', :search, '%'))) " +
+            FREE_IN_PERIOD)
+    long countFreeBySearchQuery(@Param("search") String text, @Param("start") LocalDateTime start,
+                                @Param("end") LocalDateTime end, @Param("status") BookingStatus status);
 
     List<Item> findAllByRequestId(Long requestId, Sort sort);
 
+    List<Item> findAllByRequestIdIn(Collection<Long> requestIds, Sort sort);
+
+    /**
+     * Блокирует вещи в порядке id, чтобы встречные пакеты брали блокировки в одном порядке и не ждали друг друга.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Item i where i.id in :ids order by i.id")
+    List<Item> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
 }
@@ -3,9 +3,14 @@ package ru.practicum.shareit.item;
 import ru.practicum.shareit.item.comment.Comment;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.model.Item;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ItemService {
 
@@ -15,12 +20,26 @@ public interface ItemService {
 
     List<ItemDto> getItemsByOwner(long sharerUserId, Integer from, Integer size);
 
+    long countItemsByOwner(long sharerUserId);
+
     ItemDto findItemDtoById(long id, long sharerUserId);
 
     /*void deleteItem(long id, long sharerUserId);*/
 
     List<Item> searchByText(String text, Integer from, Integer size);
 
+    long countSearchResults(String text);
+
+    List<Item> searchFuzzy(String text, Integer from, Integer size);
+
+    long countFuzzySearchResults(String text);
+
+    List<ItemDtoShort> suggest(String prefix, int size);
+
+    List<Item> searchFree(String text, LocalDateTime start, LocalDateTime end, Integer from, Integer size);
+
+    long countFreeSearchResults(String text, LocalDateTime start, LocalDateTime end);
+
     void checkUserExists(long id);
 
     Item findItemById(long id, long sharerUserId);
@@ -29,4 +48,8 @@ public interface ItemService {
 
     List<ItemDto> getItemsByRequestId(Long requestId);
 
+    List<TimeSlotDto> getAvailability(long itemId, LocalDateTime from, LocalDateTime to);
+
+    Map<Long, List<ItemDto>> getItemsByRequestIds(Collection<Long> requestIds);
+
 }
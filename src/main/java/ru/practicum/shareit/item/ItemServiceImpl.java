@@ -2,25 +2,32 @@ package ru.practicum.shareit.item;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.InChunks;
 import ru.practicum.shareit.Pagination;
+import ru.practicum.shareit.TotalCountCache;
 import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
 import ru.practicum.shareit.booking.BookingRepository;
 import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.booking.dto.BookingMapper;
-import ru.practicum.shareit.booking.dto.BookingShortDto;
+import ru.practicum.shareit.booking.summary.ItemBookingSummary;
+import ru.practicum.shareit.booking.summary.ItemBookingSummaryService;
 import ru.practicum.shareit.item.comment.Comment;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.comment.CommentMapper;
 import ru.practicum.shareit.item.comment.CommentRepository;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSearch;
+import ru.practicum.shareit.item.search.ItemSuggestIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
 import ru.practicum.shareit.user.UserService;
 
 import javax.validation.ValidationException;
@@ -28,6 +35,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.data.domain.Sort.Direction.DESC;
 
@@ -42,6 +50,13 @@ public class ItemServiceImpl implements ItemService {
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
     private final BookingMapper bookingMapper;
+    private final TotalCountCache totalCountCache;
+    private final BookingIntervalIndex intervalIndex;
+    private final ItemBookingSummaryService summaryService;
+    private final ItemSearch itemSearch;
+    private final ItemSuggestIndex suggestIndex;
+    private final SearchResultCache searchCache;
+    private final ItemCache itemCache;
 
     @Transactional
     @Override
@@ -61,7 +76,13 @@ public class ItemServiceImpl implements ItemService {
         Item item = ItemMapper.toItem(itemDto);
         item.setUserId(userService.findUserById(sharerUserId).getId());
 
-        return itemRepository.save(item);
+        itemRepository.save(item);
+        summaryService.create(item.getId());
+        itemSearch.itemSaved(item);
+        suggestIndex.itemSaved(item);
+        searchCache.itemChanged(null, item);
+        itemCache.itemChanged(item.getId());
+        return item;
 
     }
 
@@ -76,6 +97,8 @@ public class ItemServiceImpl implements ItemService {
         Optional<Item> itemOptional = itemRepository.findById(id);
 
         Item item = itemOptional.get();
+        Item before = new Item(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                item.getUserId(), item.getRequestId());
 
         if (item.getUserId() != sharerUserId) {
             throw new NoSuchElementException();
@@ -93,41 +116,27 @@ public class ItemServiceImpl implements ItemService {
             item.setAvailable(itemDto.getAvailable());
         }
         log.info(item.toString());
-        return itemRepository.save(item);
+        itemRepository.save(item);
+        itemSearch.itemSaved(item);
+        suggestIndex.itemSaved(item);
+        searchCache.itemChanged(before, item);
+        itemCache.itemChanged(item.getId());
+        return item;
     }
 
     @Override
     public List<ItemDto> getItemsByOwner(long sharerUserId, Integer from, Integer size) {
         checkUserExists(sharerUserId);
-        List<Item> items = new ArrayList<>();
-        Pageable pageable;
-        Sort sort = Sort.by(Sort.Direction.ASC, "id");
-        Page<Item> page;
-        Pagination pager = new Pagination(from, size);
-
-        if (size == null) {
-            pageable =
-                    PageRequest.of(pager.getIndex(), pager.getPageSize(), sort);
-            do {
-                page = itemRepository.findByUserId(sharerUserId, pageable);
-                items.addAll(page.stream().collect(toList()));
-                pageable = pageable.next();
-            } while (page.hasNext());
-
-        } else {
-            for (int i = pager.getIndex(); i < pager.getTotalPages(); i++) {
-                pageable =
-                        PageRequest.of(i, pager.getPageSize(), sort);
-                page = itemRepository.findByUserId(sharerUserId, pageable);
-                items.addAll(page.stream().collect(toList()));
-                if (!page.hasNext()) {
-                    break;
-                }
-            }
-            items = items.stream().limit(size).collect(toList());
-        }
+        List<ItemOwnerView> views = itemRepository.findOwnerViews(sharerUserId,
+                new Pagination(from, size, Sort.by(Sort.Direction.ASC, "id")));
 
-        Map<Item, List<Comment>> comments = commentRepository.findByItemIn(items, Sort.by(DESC, "created"))
+        // отзывы читаются только для вещей, у которых они есть
+        List<Item> commented = views.stream()
+                .filter(view -> view.getCommentCount() > 0)
+                .map(ItemOwnerView::getItem)
+                .collect(toList());
+        Map<Item, List<Comment>> comments = commented.isEmpty() ? Map.of()
+                : InChunks.query(commented, chunk -> commentRepository.findByItemIn(chunk, Sort.by(DESC, "created")))
                 .stream()
                 .collect(groupingBy(Comment::getItem, toList()));
         Map<Item, List<CommentDto>> commentsDtos = new HashMap<>();
@@ -136,59 +145,49 @@ public class ItemServiceImpl implements ItemService {
             commentsDtos.put(item, CommentMapper.toCommentDtoList(comments.get(item)));
         }
 
-
-        Map<Item, List<Booking>> approvedBookings = bookingRepository.findApprovedForItems(items, Sort.by(DESC, "start"))
-                        .stream()
-                        .collect(groupingBy(Booking::getItem, toList()));
+        // устаревшие сводки страницы пересчитываются вместе, а не запросом на каждую вещь
+        Map<Long, ItemBookingSummary> read = new HashMap<>();
+        views.stream()
+                .filter(view -> view.getSummary() != null)
+                .forEach(view -> read.put(view.getItem().getId(), view.getSummary()));
+        Map<Long, ItemBookingSummary> summaries = summaryService.actual(views.stream()
+                .map(view -> view.getItem().getId())
+                .collect(toList()), read, LocalDateTime.now());
 
         List<ItemDto> results = new ArrayList<>();
-        for (Item item : items) {
+        for (ItemOwnerView view : views) {
+            Item item = view.getItem();
             ItemDto itemInfo =  ItemMapper.toItemDto(item);
 
             if (!commentsDtos.isEmpty()) {
                 itemInfo.setComments(commentsDtos.get(item));
             }
 
-            if (!approvedBookings.isEmpty()) {
-                List<Booking> bookingList = approvedBookings.getOrDefault(item, new ArrayList<>());
-
-                if (!bookingList.isEmpty()) {
-                    for (Booking booking : bookingList) {
-
-                        itemInfo.setLastBooking(bookingMapper.toBookingShortDto(bookingList.get(bookingList.size() - 1)));
-                        List<Booking> sorted = bookingList.stream()
-                                .filter(booking1 -> booking1.getEnd().isAfter(LocalDateTime.now()))
-                                .sorted(Comparator.comparing(Booking::getStart))
-                                .collect(toList());
-
-                        itemInfo.setNextBooking(bookingMapper.toBookingShortDto(sorted.get(0)));
-
-                    }
-                }
-            }
+            ItemBookingSummary summary = summaries.get(item.getId());
+            itemInfo.setLastBooking(bookingMapper.toLastBookingDto(summary, item));
+            itemInfo.setNextBooking(bookingMapper.toNextBookingDto(summary, item));
 
             results.add(itemInfo);
         }
         return results;
     }
 
+    @Override
+    public long countItemsByOwner(long sharerUserId) {
+        return totalCountCache.get("items:owner:" + sharerUserId, () -> itemRepository.countByUserId(sharerUserId));
+    }
+
     @Override
     public ItemDto findItemDtoById(long id, long sharerUserId) {
         checkUserExists(sharerUserId);
-        if (itemRepository.findById(id).isEmpty()) {
-            throw new NoSuchElementException();
-        }
-
-        return addNextAndLastBookingsAndComments(id, sharerUserId);
+        Item item = itemCache.find(id).orElseThrow(NoSuchElementException::new);
+        return addNextAndLastBookingsAndComments(item, sharerUserId);
     }
 
     @Override
     public Item findItemById(long id, long sharerUserId) {
         checkUserExists(sharerUserId);
-        if (itemRepository.findById(id).isEmpty()) {
-            throw new NoSuchElementException();
-        }
-        return itemRepository.findById(id).get();
+        return itemCache.find(id).orElseThrow(NoSuchElementException::new);
     }
 
     @Transactional
@@ -213,6 +212,28 @@ public class ItemServiceImpl implements ItemService {
                 .collect(toList());
     }
 
+    @Override
+    public Map<Long, List<ItemDto>> getItemsByRequestIds(Collection<Long> requestIds) {
+        if (requestIds.isEmpty()) {
+            return Map.of();
+        }
+        return InChunks.query(requestIds,
+                        chunk -> itemRepository.findAllByRequestIdIn(chunk, Sort.by(Sort.Direction.DESC, "id")))
+                .stream()
+                .collect(groupingBy(Item::getRequestId, mapping(ItemMapper::toItemDto, toList())));
+    }
+
+    @Override
+    public List<TimeSlotDto> getAvailability(long itemId, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new ValidationException("Начало периода должно быть раньше конца");
+        }
+        if (!itemRepository.existsById(itemId)) {
+            throw new NoSuchElementException();
+        }
+        return intervalIndex.freeSlots(itemId, from, to);
+    }
+
     /*@Transactional
     @Override
     public void deleteItem(long id, long sharerUserId) {
@@ -224,37 +245,81 @@ public class ItemServiceImpl implements ItemService {
         if (text.isBlank()) {
             return new ArrayList<>();
         }
-        List<Item> items = new ArrayList<>();
-
-        text = text.toLowerCase();
-        Pageable pageable;
-        Sort sort = Sort.by(Sort.Direction.ASC, "name");
-        Page<Item> page;
-        Pagination pager = new Pagination(from, size);
-
-        if (size == null) {
-            pageable =
-                    PageRequest.of(pager.getIndex(), pager.getPageSize(), sort);
-            do {
-                page = itemRepository.getItemsBySearchQuery(text, pageable);
-                items.addAll(page.stream().collect(toList()));
-                pageable = pageable.next();
-            } while (page.hasNext());
-
-        } else {
-            for (int i = pager.getIndex(); i < pager.getTotalPages(); i++) {
-                pageable =
-                        PageRequest.of(i, pager.getPageSize(), sort);
-                page = itemRepository.getItemsBySearchQuery(text, pageable);
-                items.addAll(page.stream().collect(toList()));
-                if (!page.hasNext()) {
-                    break;
-                }
-            }
-            items = items.stream().limit(size).collect(toList());
+        String search = text.toLowerCase();
+        return searchCache.get(search, from, size,
+                () -> itemSearch.search(search, new Pagination(from, size, Sort.unsorted())));
+    }
+
+    @Override
+    public long countSearchResults(String text) {
+        if (text.isBlank()) {
+            return 0;
         }
+        String search = text.toLowerCase();
+        return totalCountCache.get("items:search:" + search, () -> itemSearch.count(search));
+    }
 
-        return items;
+    @Override
+    public List<Item> searchFuzzy(String text, Integer from, Integer size) {
+        if (text.isBlank()) {
+            return new ArrayList<>();
+        }
+        return itemSearch.searchFuzzy(text.toLowerCase(), new Pagination(from, size, Sort.unsorted()));
+    }
+
+    @Override
+    public long countFuzzySearchResults(String text) {
+        if (text.isBlank()) {
+            return 0;
+        }
+        String search = text.toLowerCase();
+        return totalCountCache.get("items:fuzzy:" + search, () -> itemSearch.countFuzzy(search));
+    }
+
+    /**
+     * Вещи, свободные весь период. Подтверждённые бронирования меняют результат в любой момент,
+     * поэтому страницы не кэшируются.
+     */
+    @Override
+    public List<Item> searchFree(String text, LocalDateTime start, LocalDateTime end, Integer from, Integer size) {
+        checkPeriod(start, end);
+        if (text.isBlank()) {
+            return new ArrayList<>();
+        }
+        return itemRepository.getFreeItemsBySearchQuery(text.toLowerCase(), start, end, BookingStatus.APPROVED,
+                new Pagination(from, size, Sort.unsorted()));
+    }
+
+    @Override
+    public long countFreeSearchResults(String text, LocalDateTime start, LocalDateTime end) {
+        checkPeriod(start, end);
+        if (text.isBlank()) {
+            return 0;
+        }
+        String search = text.toLowerCase();
+        return totalCountCache.get("items:free:" + start + ":" + end + ":" + search,
+                () -> itemRepository.countFreeBySearchQuery(search, start, end, BookingStatus.APPROVED));
+    }
+
+    private void checkPeriod(LocalDateTime start, LocalDateTime end) {
+        if (start == null || end == null || !start.isBefore(end)) {
+            throw new ValidationException("Период поиска задаётся началом и концом, начало раньше конца");
+        }
+    }
+
+    /**
+     * Подсказки берутся из дерева в памяти, транзакция и соединение с базой не нужны.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public List<ItemDtoShort> suggest(String prefix, int size) {
+        if (size <= 0) {
+            throw new ValidationException("Число подсказок должно быть положительным");
+        }
+        if (prefix.isBlank()) {
+            return new ArrayList<>();
+        }
+        return suggestIndex.suggest(prefix, Math.min(size, ItemSuggestIndex.MAX_SUGGESTIONS));
     }
 
     @Override
@@ -264,54 +329,15 @@ public class ItemServiceImpl implements ItemService {
         }
     }
 
-    private ItemDto addNextAndLastBookingsAndComments(Long id, Long sharerUserId) {
-        Item item = itemRepository.findById(id).get();
+    private ItemDto addNextAndLastBookingsAndComments(Item item, Long sharerUserId) {
+        long id = item.getId();
         ItemDto itemDto = ItemMapper.toItemDto(item);
 
 
         if (item.getUserId() == sharerUserId) {
-            Optional<Booking> bk = Optional.ofNullable(bookingRepository.findFirstByItemIdAndEndBeforeOrderByEndDesc(id,
-                    LocalDateTime.now()));
-
-            if (bk.isEmpty()) {
-                List<Booking> bookingList = bookingRepository.test2(id, LocalDateTime.now());
-                if (bookingList.size() == 1) {
-                    Optional<Booking> booking = bookingRepository.test2(id, LocalDateTime.now()).stream().findFirst();
-                    if (booking.isPresent() && booking.get().getStatus().equals(BookingStatus.APPROVED)) {
-                        itemDto.setLastBooking(bookingMapper.toBookingShortDto(booking.get()));
-                    }
-                } else {
-                    itemDto.setLastBooking(null);
-                }
-            } else {
-                BookingShortDto bookingShortDto = bookingMapper.toBookingShortDto(bk.get());
-                if (bookingShortDto.getStatus().equals(BookingStatus.APPROVED)) {
-                    itemDto.setLastBooking(bookingShortDto);
-                } else {
-                    itemDto.setLastBooking(null);
-                }
-            }
-        } else {
-            itemDto.setLastBooking(null);
-        }
-
-        if (item.getUserId() == sharerUserId) {
-            Optional<Booking> bk = Optional.ofNullable(bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(id,
-                    LocalDateTime.now()));
-
-            if (bk.isEmpty()) {
-                itemDto.setNextBooking(null);
-            } else {
-                BookingShortDto bookingShortDto = bookingMapper.toBookingShortDto(bk.get());
-                if (bookingShortDto.getStatus().equals(BookingStatus.APPROVED)) {
-                    itemDto.setNextBooking(bookingShortDto);
-                } else {
-                    itemDto.setNextBooking(null);
-                }
-            }
-
-        } else {
-            itemDto.setNextBooking(null);
+            ItemBookingSummary summary = summaryService.findByItemIds(List.of(id), LocalDateTime.now()).get(id);
+            itemDto.setLastBooking(bookingMapper.toLastBookingDto(summary, item));
+            itemDto.setNextBooking(bookingMapper.toNextBookingDto(summary, item));
         }
 
         try {
@@ -1,6 +1,7 @@
 package ru.practicum.shareit.item.comment;
 
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.practicum.shareit.item.model.Item;
 
@@ -9,10 +10,13 @@ import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
+    @EntityGraph(attributePaths = "author")
     List<Comment> findAllByItemId(long itemId);
 
+    @EntityGraph(attributePaths = "author")
     List<Comment> findByItemIn(Collection<Item> items, Sort sort);
 
+    @EntityGraph(attributePaths = "author")
     List<Comment> findByItem(Item item, Sort sort);
 
 }
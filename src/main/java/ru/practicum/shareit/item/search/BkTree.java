@@ -0,0 +1,119 @@
+package ru.practicum.shareit.item.search;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * BK-дерево слов по расстоянию Левенштейна. Потомки узла лежат по расстоянию до него, поэтому при поиске
+ * с допуском k обходятся только ветви с расстоянием от d - k до d + k - малая часть словаря.
+ * Удаления нет: словарь пересобирается вместе с индексом. Синхронизацию обеспечивает вызывающий.
+ */
+class BkTree {
+    private Node root;
+    private int size;
+
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(node.word, word, new int[word.length() + 1], new int[word.length() + 1]);
+            if (distance == 0) {
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.addChild(distance, new Node(word));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Передаёт в action все слова не дальше maxDistance от word вместе с расстоянием.
+     */
+    void search(String word, int maxDistance, ObjIntConsumer<String> action) {
+        if (root == null) {
+            return;
+        }
+        // строки матрицы расстояний общие на весь обход
+        int[] previous = new int[word.length() + 1];
+        int[] current = new int[word.length() + 1];
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int distance = distance(node.word, word, previous, current);
+            if (distance <= maxDistance) {
+                action.accept(node.word, distance);
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                if (Math.abs(node.distances[i] - distance) <= maxDistance) {
+                    stack.push(node.children[i]);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Расстояние Левенштейна по двум строкам матрицы длиной b.length() + 1.
+     */
+    private static int distance(String a, String b, int[] previous, int[] current) {
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char letter = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = letter == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static final class Node {
+        private final String word;
+        private int[] distances = new int[0];
+        private Node[] children = new Node[0];
+        private int childCount;
+
+        Node(String word) {
+            this.word = word;
+        }
+
+        Node child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (distances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount * 2);
+                distances = Arrays.copyOf(distances, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            distances[childCount] = distance;
+            children[childCount++] = child;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.shareit.item.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Полнотекстовый поиск PostgreSQL по items.search_vector (GIN-индекс, см. schema-postgresql.sql).
+ * Каждое слово запроса ищется как префикс, совпадение в названии весит больше, чем в описании.
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.item.search", havingValue = "fulltext", matchIfMissing = true)
+public class FullTextItemSearch implements ItemSearch {
+    private static final String SEARCH = "select i.* from items i, to_tsquery('simple', :query) q" +
+            " where i.available and i.search_vector @@ q" +
+            " order by ts_rank(i.search_vector, q) desc, i.id";
+    private static final String COUNT = "select count(*) from items i" +
+            " where i.available and i.search_vector @@ to_tsquery('simple', :query)";
+
+    private final EntityManager entityManager;
+
+    public FullTextItemSearch(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Item> search(String text, Pageable pageable) {
+        String query = toTsQuery(text);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createNativeQuery(SEARCH, Item.class)
+                .setParameter("query", query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    @Override
+    public long count(String text) {
+        String query = toTsQuery(text);
+        if (query.isEmpty()) {
+            return 0;
+        }
+        return ((Number) entityManager.createNativeQuery(COUNT)
+                .setParameter("query", query)
+                .getSingleResult()).longValue();
+    }
+
+    /**
+     * Оставляет от запроса только буквы и цифры, поэтому синтаксис tsquery из пользовательского текста не пройдёт.
+     */
+    static String toTsQuery(String text) {
+        return Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.shareit.item.search;
+
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+/**
+ * Поиск доступных вещей по тексту в названии и описании, более релевантные - первыми.
+ * Реализация выбирается свойством shareit.item.search: fulltext для PostgreSQL, like для H2,
+ * memory - индекс триграмм в памяти приложения.
+ */
+public interface ItemSearch {
+
+    List<Item> search(String text, Pageable pageable);
+
+    long count(String text);
+
+    /**
+     * Поиск с допуском опечаток. Словарь слов есть только у индекса в памяти, остальные реализации
+     * ищут точное вхождение.
+     */
+    default List<Item> searchFuzzy(String text, Pageable pageable) {
+        return search(text, pageable);
+    }
+
+    default long countFuzzy(String text) {
+        return count(text);
+    }
+
+    /**
+     * Вызывается после создания или изменения вещи в текущей транзакции. Поиску по базе делать ничего не нужно.
+     */
+    default void itemSaved(Item item) {
+    }
+}
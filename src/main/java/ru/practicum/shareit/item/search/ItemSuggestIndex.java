@@ -0,0 +1,427 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.Transactions;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserDeletedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Подсказки по началу названия доступной вещи: префиксное дерево в памяти, популярные вещи - первыми.
+ * Популярность - число бронирований вещи. Каждый узел хранит MAX_SUGGESTIONS лучших вещей своего поддерева,
+ * поэтому ответ - это спуск по префиксу без обхода поддерева.
+ * Рост популярности и новые вещи поправляют списки узлов на пути сразу. Если из списка узла уходит вещь,
+ * узел помечается устаревшим и пересчитывается из списков потомков при первом запросе.
+ * Изменения применяются после коммита. При старте дерево строится из базы; изменения, закоммиченные
+ * во время чтения базы, запоминаются и повторяются поверх построенного дерева. Бронирование, которое
+ * закоммичено до подсчёта популярности, а применено к дереву уже после начала перестройки, учитывается
+ * дважды: популярность лишь упорядочивает подсказки, и такая погрешность допустима.
+ */
+@Slf4j
+@Component
+public class ItemSuggestIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final int LOAD_BATCH = 1000;
+
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private Node root = new Node();
+    private List<Runnable> pending;
+
+    public ItemSuggestIndex(ItemRepository itemRepository, BookingRepository bookingRepository) {
+        this.itemRepository = itemRepository;
+        this.bookingRepository = bookingRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        recordWrites(new ArrayList<>());
+        try {
+            Map<Long, Long> popularity = new HashMap<>();
+            bookingRepository.countBookingsByItem()
+                    .forEach(count -> popularity.put(count.getItemId(), count.getBookings()));
+            List<Entry> loaded = new ArrayList<>();
+            long lastId = 0;
+            List<Item> batch;
+            do {
+                batch = itemRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, LOAD_BATCH));
+                for (Item item : batch) {
+                    Entry entry = new Entry(item);
+                    entry.popularity = popularity.getOrDefault(item.getId(), 0L);
+                    loaded.add(entry);
+                    lastId = item.getId();
+                }
+            } while (batch.size() == LOAD_BATCH);
+
+            lock.writeLock().lock();
+            try {
+                entries.clear();
+                root = new Node();
+                for (Entry entry : loaded) {
+                    entries.put(entry.id, entry);
+                    if (entry.available) {
+                        insert(entry);
+                    }
+                }
+                pending.forEach(Runnable::run);
+                log.info("Дерево подсказок построено: {} вещей, повторено изменений: {}",
+                        loaded.size(), pending.size());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            recordWrites(null);
+        }
+    }
+
+    public List<ItemDtoShort> suggest(String prefix, int size) {
+        String key = prefix.toLowerCase();
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            if (node == null) {
+                return List.of();
+            }
+            if (!node.dirty) {
+                return toDtos(node.top, size);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            Node node = find(key);
+            if (node == null) {
+                return List.of();
+            }
+            clean(node);
+            return toDtos(node.top, size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Вызывается после создания или изменения вещи в текущей транзакции.
+     */
+    public void itemSaved(Item item) {
+        Entry saved = new Entry(item);
+        Transactions.afterCompletion(() -> write(() -> put(saved.copy())), () -> {
+        });
+    }
+
+    /**
+     * Вызывается при создании бронирования вещи в текущей транзакции.
+     */
+    public void itemBooked(long itemId) {
+        Transactions.afterCompletion(() -> write(() -> booked(itemId)), () -> {
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        // вещи пользователя удалены в базе каскадом
+        write(() -> removeItemsOf(event.getUserId()));
+    }
+
+    private void recordWrites(List<Runnable> writes) {
+        lock.writeLock().lock();
+        try {
+            pending = writes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет изменение к дереву, а во время перестройки ещё и запоминает его для повтора.
+     */
+    private void write(Runnable write) {
+        lock.writeLock().lock();
+        try {
+            write.run();
+            if (pending != null) {
+                pending.add(write);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Entry saved) {
+        Entry previous = entries.put(saved.id, saved);
+        if (previous != null) {
+            saved.popularity = previous.popularity;
+            if (previous.available) {
+                remove(previous);
+            }
+        }
+        if (saved.available) {
+            insert(saved);
+        }
+    }
+
+    private void booked(long itemId) {
+        Entry entry = entries.get(itemId);
+        if (entry != null) {
+            entry.popularity++;
+            if (entry.available) {
+                forEachOnPath(entry.key, node -> offer(node, entry));
+            }
+        }
+    }
+
+    private void removeItemsOf(long userId) {
+        entries.values().removeIf(entry -> {
+            if (entry.userId != userId) {
+                return false;
+            }
+            if (entry.available) {
+                remove(entry);
+            }
+            return true;
+        });
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private void insert(Entry entry) {
+        Node node = root;
+        offer(node, entry);
+        for (int i = 0; i < entry.key.length(); i++) {
+            Node child = node.child(entry.key.charAt(i));
+            if (child == null) {
+                child = node.addChild(entry.key.charAt(i));
+            }
+            node = child;
+            offer(node, entry);
+        }
+        node.terminals = append(node.terminals, entry.id);
+    }
+
+    /**
+     * Убирает вещь из дерева. Узлы, в чьих списках она была, пересчитываются при следующем запросе,
+     * опустевшие узлы удаляются.
+     */
+    private void remove(Entry entry) {
+        Node[] path = new Node[entry.key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < entry.key.length(); i++) {
+            path[i + 1] = path[i].child(entry.key.charAt(i));
+        }
+        Node last = path[path.length - 1];
+        last.terminals = without(last.terminals, entry.id);
+        for (Node node : path) {
+            if (!node.dirty && contains(node.top, entry.id)) {
+                node.dirty = true;
+            }
+        }
+        for (int i = path.length - 1; i > 0; i--) {
+            if (path[i].terminals.length > 0 || path[i].childCount > 0) {
+                break;
+            }
+            path[i - 1].removeChild(entry.key.charAt(i - 1));
+        }
+    }
+
+    private void forEachOnPath(String key, Consumer<Node> action) {
+        Node node = root;
+        action.accept(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            action.accept(node);
+        }
+    }
+
+    /**
+     * Ставит вещь в список узла, если она попадает в число лучших. Устаревший узел не трогаем:
+     * его список всё равно будет пересчитан.
+     */
+    private void offer(Node node, Entry entry) {
+        if (node.dirty) {
+            return;
+        }
+        if (!contains(node.top, entry.id)) {
+            if (node.top.length < MAX_SUGGESTIONS) {
+                node.top = append(node.top, entry.id);
+            } else if (better(entry, entries.get(node.top[node.top.length - 1]))) {
+                node.top[node.top.length - 1] = entry.id;
+            } else {
+                return;
+            }
+        }
+        sort(node.top);
+    }
+
+    /**
+     * Пересчитывает список узла из вещей, которые на нём заканчиваются, и списков потомков.
+     */
+    private void clean(Node node) {
+        if (!node.dirty) {
+            return;
+        }
+        long[] candidates = node.terminals;
+        for (int i = 0; i < node.childCount; i++) {
+            clean(node.children[i]);
+            long[] top = node.children[i].top;
+            long[] merged = Arrays.copyOf(candidates, candidates.length + top.length);
+            System.arraycopy(top, 0, merged, candidates.length, top.length);
+            candidates = merged;
+        }
+        sort(candidates);
+        node.top = Arrays.copyOf(candidates, Math.min(candidates.length, MAX_SUGGESTIONS));
+        node.dirty = false;
+    }
+
+    private void sort(long[] ids) {
+        // списки короткие, вставками быстрее, чем через компаратор с упаковкой
+        for (int i = 1; i < ids.length; i++) {
+            long id = ids[i];
+            Entry entry = entries.get(id);
+            int j = i - 1;
+            while (j >= 0 && better(entry, entries.get(ids[j]))) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = id;
+        }
+    }
+
+    private List<ItemDtoShort> toDtos(long[] top, int size) {
+        List<ItemDtoShort> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(size, top.length); i++) {
+            Entry entry = entries.get(top[i]);
+            result.add(new ItemDtoShort(entry.id, entry.name));
+        }
+        return result;
+    }
+
+    private static boolean better(Entry a, Entry b) {
+        return a.popularity > b.popularity || a.popularity == b.popularity && a.id < b.id;
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        for (long value : ids) {
+            if (value == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] append(long[] ids, long id) {
+        long[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        long[] result = new long[ids.length];
+        int size = 0;
+        for (long value : ids) {
+            if (value != id) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final String name;
+        private final String key;
+        private final long userId;
+        private final boolean available;
+        private long popularity;
+
+        Entry(Item item) {
+            this(item.getId(), item.getName(), item.getUserId(), Boolean.TRUE.equals(item.getAvailable()));
+        }
+
+        private Entry(long id, String name, long userId, boolean available) {
+            this.id = id;
+            this.name = name;
+            this.key = name.toLowerCase();
+            this.userId = userId;
+            this.available = available;
+        }
+
+        /**
+         * Новая запись той же версии вещи, без популярности: при повторе изменения она не смешивается
+         * с записью, уже вставленной в прежнее дерево.
+         */
+        Entry copy() {
+            return new Entry(id, name, userId, available);
+        }
+    }
+
+    /**
+     * Узел дерева: потомки в массивах по символу, без Map на каждый узел.
+     */
+    private static final class Node {
+        private static final long[] EMPTY = new long[0];
+
+        private char[] letters = new char[0];
+        private Node[] children = new Node[0];
+        private int childCount;
+        private long[] terminals = EMPTY;
+        private long[] top = EMPTY;
+        private boolean dirty;
+
+        Node child(char letter) {
+            for (int i = 0; i < childCount; i++) {
+                if (letters[i] == letter) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char letter) {
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount * 2);
+                letters = Arrays.copyOf(letters, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            Node child = new Node();
+            letters[childCount] = letter;
+            children[childCount++] = child;
+            return child;
+        }
+
+        void removeChild(char letter) {
+            for (int i = 0; i < childCount; i++) {
+                if (letters[i] == letter) {
+                    letters[i] = letters[childCount - 1];
+                    children[i] = children[childCount - 1];
+                    children[--childCount] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
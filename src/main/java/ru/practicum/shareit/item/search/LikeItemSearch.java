@@ -0,0 +1,32 @@
+package ru.practicum.shareit.item.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+/**
+ * Поиск по подстроке для H2, где нет tsvector: совпадения в названии идут раньше совпадений в описании.
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.item.search", havingValue = "like")
+public class LikeItemSearch implements ItemSearch {
+    private final ItemRepository itemRepository;
+
+    public LikeItemSearch(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    @Override
+    public List<Item> search(String text, Pageable pageable) {
+        return itemRepository.getItemsBySearchQuery(text, pageable);
+    }
+
+    @Override
+    public long count(String text) {
+        return itemRepository.countBySearchQuery(text);
+    }
+}
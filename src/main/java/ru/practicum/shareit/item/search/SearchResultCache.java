@@ -0,0 +1,89 @@
+package ru.practicum.shareit.item.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.Transactions;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserDeletedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш страниц точного поиска вещей по (тексту в нижнем регистре, from, size), ограничен размером и временем жизни.
+ * Запись вещи сбрасывает страницы тех запросов, которым вещь соответствовала до или после изменения:
+ * сразу и ещё раз после завершения транзакции. Каждый сброс увеличивает поколение кэша, и страница, во время
+ * поиска которой поколение сменилось, в кэш не кладётся: иначе параллельный поиск, прочитавший базу до коммита,
+ * положил бы старые данные уже после сброса.
+ * Попадания и промахи видны в метриках cache.gets с тегом cache=items.search.
+ */
+@Component
+public class SearchResultCache {
+    public static final String NAME = "items.search";
+
+    private final Cache<Key, List<Item>> pages;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchResultCache(@Value("${shareit.item.search-cache.ttl:60s}") Duration ttl,
+                             @Value("${shareit.item.search-cache.max-size:1000}") long maxSize,
+                             MeterRegistry meterRegistry) {
+        this.pages = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, NAME);
+    }
+
+    public List<Item> get(String text, Integer from, Integer size, Supplier<List<Item>> search) {
+        Key key = new Key(text, from, size);
+        List<Item> cached = pages.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long started = generation.get();
+        List<Item> page = List.copyOf(search.get());
+        // сброс увеличивает поколение до удаления страниц, поэтому страница либо не кладётся, либо будет удалена
+        pages.asMap().compute(key, (k, current) -> generation.get() == started ? page : current);
+        return page;
+    }
+
+    /**
+     * before - вещь до изменения, null для новой.
+     */
+    public void itemChanged(Item before, Item after) {
+        Runnable evict = () -> {
+            generation.incrementAndGet();
+            pages.asMap().keySet()
+                    .removeIf(key -> matches(before, key.getText()) || matches(after, key.getText()));
+        };
+        evict.run();
+        Transactions.afterCompletion(evict, evict);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        generation.incrementAndGet();
+        pages.invalidateAll();
+    }
+
+    private static boolean matches(Item item, String text) {
+        return item != null && Boolean.TRUE.equals(item.getAvailable())
+                && (item.getName().toLowerCase().contains(text) || item.getDescription().toLowerCase().contains(text));
+    }
+
+    @Data
+    private static class Key {
+        private final String text;
+        private final Integer from;
+        private final Integer size;
+    }
+}
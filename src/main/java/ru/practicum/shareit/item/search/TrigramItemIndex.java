@@ -0,0 +1,600 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.Transactions;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserDeletedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Поиск вещей в памяти: инвертированный индекс триграмм названия и описания.
+ * Каждая версия вещи - отдельный документ с номером по порядку, поэтому списки документов в индексе
+ * только дописываются и остаются отсортированными. Изменение вещи гасит старый документ и добавляет новый,
+ * погашенные документы вычищаются перестройкой, когда их становится больше живых.
+ * Запись применяется сразу, как в BookingIntervalIndex; при откате транзакции вещи возвращаются к версиям,
+ * которые были до неё.
+ * Для нечёткого поиска рядом ведётся словарь слов названия и описания: BK-дерево и списки документов
+ * по каждому слову.
+ * При старте индекс строится из базы. Приложение к этому моменту уже принимает запросы, поэтому записи,
+ * пришедшие во время чтения базы, запоминаются и повторяются поверх построенного индекса.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shareit.item.search", havingValue = "memory")
+public class TrigramItemIndex implements ItemSearch {
+    private static final int LOAD_BATCH = 1000;
+    private static final long DESCRIPTION_ONLY = 1L << 62;
+    private static final long ITEM_ID_MASK = DESCRIPTION_ONLY - 1;
+    private static final int DISTANCE_SHIFT = 56;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ItemRepository itemRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, IntList> postings = new HashMap<>();
+    private Map<String, IntList> wordPostings = new HashMap<>();
+    private BkTree dictionary = new BkTree();
+    private final Map<Long, Integer> docsByItemId = new HashMap<>();
+    private final List<Item> docs = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final BitSet available = new BitSet();
+    private int dead;
+    private List<Runnable> pending;
+
+    public TrigramItemIndex(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        recordWrites(new ArrayList<>());
+        try {
+            List<Item> items = new ArrayList<>();
+            long lastId = 0;
+            List<Item> batch;
+            do {
+                batch = itemRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, LOAD_BATCH));
+                for (Item item : batch) {
+                    items.add(copy(item));
+                    lastId = item.getId();
+                }
+            } while (batch.size() == LOAD_BATCH);
+
+            lock.writeLock().lock();
+            try {
+                clear();
+                items.forEach(this::add);
+                // записи, сделанные во время чтения, могли не попасть в прочитанные страницы
+                pending.forEach(Runnable::run);
+                log.info("Индекс поиска вещей построен: {} вещей, {} слов в словаре, повторено записей: {}",
+                        items.size(), dictionary.size(), pending.size());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            recordWrites(null);
+        }
+    }
+
+    @Override
+    public void itemSaved(Item item) {
+        Item snapshot = copy(item);
+        Item previous;
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsByItemId.get(snapshot.getId());
+            previous = doc == null ? null : docs.get(doc);
+            write(() -> put(snapshot));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            versionsBeforeTransaction().putIfAbsent(snapshot.getId(), Optional.ofNullable(previous));
+        }
+    }
+
+    @Override
+    public List<Item> search(String text, Pageable pageable) {
+        int limit = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+        lock.readLock().lock();
+        try {
+            TopK top = new TopK(limit);
+            forEachMatch(text, doc -> top.add(rank(doc, text)));
+            long[] ranked = top.sorted();
+            List<Item> result = new ArrayList<>();
+            for (long i = pageable.getOffset(); i < ranked.length; i++) {
+                result.add(copy(docs.get(docsByItemId.get(ranked[(int) i] & ITEM_ID_MASK))));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count(String text) {
+        lock.readLock().lock();
+        try {
+            long[] count = {0};
+            forEachMatch(text, doc -> count[0]++);
+            return count[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Нечёткий поиск: каждое слово запроса должно найтись в вещи с точностью до опечаток.
+     * Выше в выдаче вещи с меньшей суммой расстояний, дальше - по id.
+     */
+    @Override
+    public List<Item> searchFuzzy(String text, Pageable pageable) {
+        int limit = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+        lock.readLock().lock();
+        try {
+            TopK top = new TopK(limit);
+            long[] matches = fuzzyMatches(text);
+            for (long match : matches) {
+                int doc = (int) (match >>> 32);
+                top.add((match & 0xFFFF_FFFFL) << DISTANCE_SHIFT | docs.get(doc).getId());
+            }
+            long[] ranked = top.sorted();
+            List<Item> result = new ArrayList<>();
+            for (long i = pageable.getOffset(); i < ranked.length; i++) {
+                long itemId = ranked[(int) i] & ((1L << DISTANCE_SHIFT) - 1);
+                result.add(copy(docs.get(docsByItemId.get(itemId))));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long countFuzzy(String text) {
+        lock.readLock().lock();
+        try {
+            return fuzzyMatches(text).length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        // вещи пользователя удалены в базе каскадом
+        lock.writeLock().lock();
+        try {
+            write(() -> removeItemsOf(event.getUserId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void recordWrites(List<Runnable> writes) {
+        lock.writeLock().lock();
+        try {
+            pending = writes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет запись к индексу, а во время перестройки ещё и запоминает её для повтора. Вызывается
+     * под блокировкой записи.
+     */
+    private void write(Runnable write) {
+        write.run();
+        if (pending != null) {
+            pending.add(write);
+        }
+    }
+
+    private void removeItemsOf(long userId) {
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            if (docs.get(doc).getUserId() == userId) {
+                docsByItemId.remove(docs.get(doc).getId());
+                live.clear(doc);
+                available.clear(doc);
+                dead++;
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Версии вещей до начала текущей транзакции: при откате возвращаются они, сколько бы раз вещь
+     * ни менялась внутри транзакции.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Optional<Item>> versionsBeforeTransaction() {
+        Map<Long, Optional<Item>> versions = (Map<Long, Optional<Item>>) TransactionSynchronizationManager
+                .getResource(this);
+        if (versions == null) {
+            Map<Long, Optional<Item>> created = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            Transactions.afterCompletion(() -> TransactionSynchronizationManager.unbindResource(this), () -> {
+                TransactionSynchronizationManager.unbindResource(this);
+                restore(created);
+            });
+            versions = created;
+        }
+        return versions;
+    }
+
+    private void restore(Map<Long, Optional<Item>> versions) {
+        lock.writeLock().lock();
+        try {
+            versions.forEach((itemId, item) -> {
+                if (item.isPresent()) {
+                    write(() -> put(item.get()));
+                } else {
+                    write(() -> remove(itemId));
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ключ релевантности: чем меньше, тем выше в выдаче. Совпадение в названии важнее, дальше - по id вещи.
+     */
+    private long rank(int doc, String text) {
+        long id = docs.get(doc).getId();
+        return names.get(doc).contains(text) ? id : DESCRIPTION_ONLY | id;
+    }
+
+    private void forEachMatch(String text, IntConsumer action) {
+        if (text.length() < 3) {
+            for (int doc = available.nextSetBit(0); doc >= 0; doc = available.nextSetBit(doc + 1)) {
+                if (matches(doc, text)) {
+                    action.accept(doc);
+                }
+            }
+            return;
+        }
+        List<IntList> lists = new ArrayList<>();
+        for (long trigram : trigrams(text)) {
+            IntList list = postings.get(trigram);
+            if (list == null) {
+                return;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] candidates = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+        int size = candidates.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            size = intersect(candidates, size, lists.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            int doc = candidates[i];
+            // триграммы не гарантируют, что подстрока целиком стоит подряд
+            if (available.get(doc) && matches(doc, text)) {
+                action.accept(doc);
+            }
+        }
+    }
+
+    /**
+     * Доступные документы, где нашлись все слова запроса: номер документа в старших 32 битах,
+     * сумма расстояний - в младших. Отсортированы по номеру документа.
+     */
+    private long[] fuzzyMatches(String text) {
+        long[] result = null;
+        for (String word : words(text)) {
+            long[] matches = fuzzyMatches(word, maxDistance(word));
+            result = result == null ? matches : intersect(result, matches);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        if (result == null) {
+            return new long[0];
+        }
+        int kept = 0;
+        for (long match : result) {
+            if (available.get((int) (match >>> 32))) {
+                result[kept++] = match;
+            }
+        }
+        return Arrays.copyOf(result, kept);
+    }
+
+    /**
+     * Документы со словами не дальше maxDistance от word, у каждого - наименьшее расстояние.
+     */
+    private long[] fuzzyMatches(String word, int maxDistance) {
+        List<long[]> lists = new ArrayList<>();
+        dictionary.search(word, maxDistance, (match, distance) -> {
+            IntList docList = wordPostings.get(match);
+            long[] list = new long[docList.size];
+            for (int i = 0; i < docList.size; i++) {
+                list[i] = (long) docList.values[i] << 32 | distance;
+            }
+            lists.add(list);
+        });
+        if (lists.isEmpty()) {
+            return new long[0];
+        }
+        // сливаем попарно от коротких списков к длинным
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        long[] result = lists.get(0);
+        for (int i = 1; i < lists.size(); i++) {
+            result = union(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Допуск растёт с длиной слова: в коротком слове одна замена уже даёт другое слово.
+     */
+    private static int maxDistance(String word) {
+        if (word.length() <= 2) {
+            return 0;
+        }
+        return word.length() <= 5 ? 1 : 2;
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || i < a.length && a[i] >>> 32 < b[j] >>> 32) {
+                result[size++] = a[i++];
+            } else if (i == a.length || b[j] >>> 32 < a[i] >>> 32) {
+                result[size++] = b[j++];
+            } else {
+                result[size++] = Math.min(a[i++], b[j++]);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Документы из обоих списков, расстояния складываются.
+     */
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length && j < b.length) {
+            long docA = a[i] >>> 32;
+            long docB = b[j] >>> 32;
+            if (docA < docB) {
+                i++;
+            } else if (docB < docA) {
+                j++;
+            } else {
+                result[size++] = a[i++] + (b[j++] & 0xFFFF_FFFFL);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private boolean matches(int doc, String text) {
+        return names.get(doc).contains(text) || descriptions.get(doc).contains(text);
+    }
+
+    /**
+     * Оставляет в candidates только документы из list, оба списка отсортированы. Возвращает новый размер.
+     */
+    private static int intersect(int[] candidates, int size, IntList list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < list.size; i++) {
+            while (j < list.size && list.values[j] < candidates[i]) {
+                j++;
+            }
+            if (j < list.size && list.values[j] == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+
+    private void add(Item item) {
+        int doc = docs.size();
+        String name = item.getName().toLowerCase();
+        String description = item.getDescription().toLowerCase();
+        docs.add(item);
+        names.add(name);
+        descriptions.add(description);
+        live.set(doc);
+        available.set(doc, Boolean.TRUE.equals(item.getAvailable()));
+        docsByItemId.put(item.getId(), doc);
+        index(doc);
+    }
+
+    private void index(int doc) {
+        long[] nameTrigrams = trigrams(names.get(doc));
+        long[] descriptionTrigrams = trigrams(descriptions.get(doc));
+        long[] all = Arrays.copyOf(nameTrigrams, nameTrigrams.length + descriptionTrigrams.length);
+        System.arraycopy(descriptionTrigrams, 0, all, nameTrigrams.length, descriptionTrigrams.length);
+        Arrays.sort(all);
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                postings.computeIfAbsent(all[i], t -> new IntList()).add(doc);
+            }
+        }
+        Set<String> docWords = new HashSet<>(words(names.get(doc)));
+        docWords.addAll(words(descriptions.get(doc)));
+        for (String word : docWords) {
+            wordPostings.computeIfAbsent(word, w -> {
+                dictionary.add(w);
+                return new IntList();
+            }).add(doc);
+        }
+    }
+
+    /**
+     * Слова с буквами. Числа в словарь не попадают: опечатка в номере модели даёт уже другую модель.
+     */
+    private static List<String> words(String text) {
+        List<String> result = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text)) {
+            if (word.chars().anyMatch(Character::isLetter)) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет новую версию вещи, прежняя версия гасится.
+     */
+    private void put(Item item) {
+        remove(item.getId());
+        add(item);
+        compactIfNeeded();
+    }
+
+    private void remove(long itemId) {
+        Integer doc = docsByItemId.remove(itemId);
+        if (doc != null) {
+            live.clear(doc);
+            available.clear(doc);
+            dead++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        int alive = docs.size() - dead;
+        if (dead > LOAD_BATCH && dead > alive) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        List<Item> alive = new ArrayList<>();
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            alive.add(docs.get(doc));
+        }
+        clear();
+        alive.forEach(this::add);
+    }
+
+    private void clear() {
+        postings = new HashMap<>();
+        wordPostings = new HashMap<>();
+        dictionary = new BkTree();
+        dead = 0;
+        docsByItemId.clear();
+        docs.clear();
+        names.clear();
+        descriptions.clear();
+        live.clear();
+        available.clear();
+    }
+
+    private static long[] trigrams(String text) {
+        long[] result = new long[Math.max(0, text.length() - 2)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return result;
+    }
+
+    private static Item copy(Item item) {
+        return new Item(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                item.getUserId(), item.getRequestId());
+    }
+
+    /**
+     * k наименьших ключей: куча с наибольшим из отобранных на вершине.
+     */
+    private static final class TopK {
+        private final int k;
+        private long[] heap = new long[16];
+        private int size;
+
+        TopK(int k) {
+            this.k = k;
+        }
+
+        void add(long key) {
+            if (k == 0) {
+                return;
+            }
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, (int) Math.min(k, 2L * size));
+                }
+                int i = size++;
+                while (i > 0 && heap[(i - 1) / 2] < key) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = key;
+            } else if (key < heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= key) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = key;
+            }
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    /**
+     * Растущий массив int без упаковки в Integer.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
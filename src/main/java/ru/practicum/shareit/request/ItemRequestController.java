@@ -2,7 +2,9 @@ package ru.practicum.shareit.request;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.TotalCountCache;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 
 import javax.validation.Valid;
@@ -45,11 +47,19 @@ public class ItemRequestController {
     }
 
     @GetMapping("/all")
-    public List<ItemRequestDto> getAllItemRequests(@RequestHeader("X-Sharer-User-Id") Long userId,
+    public ResponseEntity<List<ItemRequestDto>> getAllItemRequests(@RequestHeader("X-Sharer-User-Id") Long userId,
                                                    @RequestParam(defaultValue = "0") Integer from,
-                                                   @RequestParam(required = false) Integer size) {
+                                                   @RequestParam(required = false) Integer size,
+                                                   @RequestHeader(value = TotalCountCache.REQUEST_HEADER,
+                                                           defaultValue = "false") boolean includeTotal) {
         log.info("Получен GET-запрос к эндпоинту: '/requests/all' от пользователя с ID={} на получение всех запросов",
                 userId);
-        return service.getAllItemRequests(userId, from, size);
+        List<ItemRequestDto> requests = service.getAllItemRequests(userId, from, size);
+        if (includeTotal) {
+            return ResponseEntity.ok()
+                    .header(TotalCountCache.RESPONSE_HEADER, String.valueOf(service.countAllItemRequests(userId)))
+                    .body(requests);
+        }
+        return ResponseEntity.ok(requests);
     }
 }
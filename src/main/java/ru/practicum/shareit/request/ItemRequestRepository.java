@@ -1,16 +1,23 @@
 package ru.practicum.shareit.request;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ItemRequestRepository extends PagingAndSortingRepository<ItemRequest, Long> {
+    @Override
+    @EntityGraph(attributePaths = "requestor")
+    Optional<ItemRequest> findById(Long id);
+
+    @EntityGraph(attributePaths = "requestor")
     List<ItemRequest> findAllByRequestorId(Long requestorId, Sort sort);
 
-    Page<ItemRequest> findAllByRequestorIdNot(Long userId, Pageable pageable);
+    @EntityGraph(attributePaths = "requestor")
+    List<ItemRequest> findAllByRequestorIdNot(Long userId, Pageable pageable);
 
-    List<ItemRequest> findAllByRequestorIdNotOrderByCreatedDesc(Long userId);
+    long countByRequestorIdNot(Long userId);
 }
\ No newline at end of file
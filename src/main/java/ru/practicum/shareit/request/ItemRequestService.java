@@ -13,4 +13,6 @@ public interface ItemRequestService {
     List<ItemRequestDto> getOwnItemRequests(Long requestorId);
 
     List<ItemRequestDto> getAllItemRequests(Long userId, Integer from, Integer size);
+
+    long countAllItemRequests(Long userId);
 }
\ No newline at end of file
@@ -2,36 +2,39 @@ package ru.practicum.shareit.request;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.Pagination;
+import ru.practicum.shareit.TotalCountCache;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.request.dto.ItemRequestMapper;
 import ru.practicum.shareit.user.UserService;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Transactional(readOnly = true)
 public class ItemRequestServiceImpl implements ItemRequestService {
     private final ItemRequestRepository itemRequestRepository;
     private final ItemRequestMapper itemRequestMapper;
     private final UserService userService;
+    private final TotalCountCache totalCountCache;
 
     @Autowired
-    public ItemRequestServiceImpl(ItemRequestRepository itemRequestRepository, ItemRequestMapper itemRequestMapper, UserService userService) {
+    public ItemRequestServiceImpl(ItemRequestRepository itemRequestRepository, ItemRequestMapper itemRequestMapper,
+                                  UserService userService, TotalCountCache totalCountCache) {
         this.itemRequestRepository = itemRequestRepository;
         this.itemRequestMapper = itemRequestMapper;
         this.userService = userService;
+        this.totalCountCache = totalCountCache;
     }
 
+    @Transactional
     @Override
     public ItemRequestDto create(ItemRequestDto itemRequestDto, Long requestorId, LocalDateTime created) {
         ItemRequest itemRequest = itemRequestMapper.toItemRequest(itemRequestDto, requestorId, created);
@@ -49,54 +52,19 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     @Override
     public List<ItemRequestDto> getOwnItemRequests(Long requestorId) {
         userService.findUserById(requestorId);
-        return itemRequestRepository.findAllByRequestorId(requestorId,
-                        Sort.by(Sort.Direction.DESC, "created")).stream()
-                .map(itemRequestMapper::toItemRequestDto)
-                .collect(Collectors.toList());
+        return itemRequestMapper.toItemRequestDtoList(itemRequestRepository.findAllByRequestorId(requestorId,
+                Sort.by(Sort.Direction.DESC, "created")));
     }
 
     @Override
     public List<ItemRequestDto> getAllItemRequests(Long userId, Integer from, Integer size) {
         userService.findUserById(userId);
-        List<ItemRequestDto> listItemRequestDto = new ArrayList<>();
-        Pageable pageable;
-        Page<ItemRequest> page;
-        Pagination pager = new Pagination(from, size);
-        Sort sort = Sort.by(Sort.Direction.DESC, "created");
-
-        if (size == null) {
-            pageable =
-                    PageRequest.of(pager.getIndex(), pager.getPageSize(), sort);
-            do {
-                page = itemRequestRepository.findAllByRequestorIdNot(userId, pageable);
-                listItemRequestDto.addAll(page.stream()
-                        .map(itemRequestMapper::toItemRequestDto)
-                        .collect(Collectors.toList()));
-                pageable = pageable.next();
-            } while (page.hasNext());
+        Pageable pageable = new Pagination(from, size, Sort.by(Sort.Direction.DESC, "created"));
+        return itemRequestMapper.toItemRequestDtoList(itemRequestRepository.findAllByRequestorIdNot(userId, pageable));
+    }
 
-            List<ItemRequest> listItemRequest = itemRequestRepository.findAllByRequestorIdNotOrderByCreatedDesc(userId);
-            listItemRequestDto
-                    .addAll(listItemRequest.stream()
-                            .skip(from)
-                            .map(itemRequestMapper::toItemRequestDto)
-                            .collect(Collectors.toList()));
-        } else {
-            for (int i = pager.getIndex(); i < pager.getTotalPages(); i++) {
-                pageable =
-                        PageRequest.of(i, pager.getPageSize(), sort);
-                page = itemRequestRepository.findAllByRequestorIdNot(userId, pageable);
-                listItemRequestDto.addAll(page.stream()
-                        .map(itemRequestMapper::toItemRequestDto)
-                        .collect(Collectors.toList()));
-                if (!page.hasNext()) {
-                    break;
-                }
-            }
-            listItemRequestDto = listItemRequestDto.stream()
-                    .limit(size)
-                    .collect(Collectors.toList());
-        }
-        return listItemRequestDto;
+    @Override
+    public long countAllItemRequests(Long userId) {
+        return totalCountCache.get("requests:all:" + userId, () -> itemRequestRepository.countByRequestorIdNot(userId));
     }
 }
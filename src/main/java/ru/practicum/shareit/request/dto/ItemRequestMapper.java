@@ -3,11 +3,15 @@ package ru.practicum.shareit.request.dto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserMapper;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class ItemRequestMapper {
@@ -22,15 +26,31 @@ public class ItemRequestMapper {
     }
 
     public ItemRequestDto toItemRequestDto(ItemRequest itemRequest) {
+        return toItemRequestDto(itemRequest, itemService.getItemsByRequestId(itemRequest.getId()));
+    }
+
+    public ItemRequestDto toItemRequestDto(ItemRequest itemRequest, List<ItemDto> items) {
         return new ItemRequestDto(
                 itemRequest.getId(),
                 itemRequest.getDescription(),
                 UserMapper.toUserDto(itemRequest.getRequestor()),
                 itemRequest.getCreated(),
-                itemService.getItemsByRequestId(itemRequest.getId())
+                items
         );
     }
 
+    /**
+     * Список запросов с вещами: вещи для всех запросов страницы читаются одним запросом.
+     */
+    public List<ItemRequestDto> toItemRequestDtoList(List<ItemRequest> itemRequests) {
+        Map<Long, List<ItemDto>> items = itemService.getItemsByRequestIds(itemRequests.stream()
+                .map(ItemRequest::getId)
+                .collect(Collectors.toList()));
+        return itemRequests.stream()
+                .map(itemRequest -> toItemRequestDto(itemRequest, items.getOrDefault(itemRequest.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
     public ItemRequest toItemRequest(ItemRequestDto itemRequestDto, Long requestorId, LocalDateTime created) {
         ItemRequest itemRequest = new ItemRequest();
         itemRequest.setDescription(itemRequestDto.getDescription());
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+@Getter
+@AllArgsConstructor
+public class UserDeletedEvent {
+    private final long userId;
+    /**
+     * Вещи, которых коснулось каскадное удаление: вещи пользователя и вещи, которые он бронировал.
+     */
+    private final Set<Long> itemIds;
+}
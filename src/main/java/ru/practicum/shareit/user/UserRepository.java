@@ -1,7 +1,17 @@
 package ru.practicum.shareit.user;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.shareit.user.model.User;
 
+import java.util.List;
+
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    @Query("select i.id from Item i where i.userId = :userId")
+    List<Long> findOwnedItemIds(@Param("userId") Long userId);
+
+    @Query("select distinct b.item.id from Booking b where b.booker.id = :userId")
+    List<Long> findBookedItemIds(@Param("userId") Long userId);
 }
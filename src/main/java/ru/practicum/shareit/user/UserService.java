@@ -2,6 +2,7 @@ package ru.practicum.shareit.user;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.annotation.Transactional;
@@ -10,10 +11,12 @@ import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
 
 import javax.validation.ValidationException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @EnableTransactionManagement
 @Slf4j
@@ -23,6 +26,7 @@ import java.util.Optional;
 public class UserService {
 
     private UserRepository userRepository;
+    private ApplicationEventPublisher eventPublisher;
 
     public List<User> findAllUsers() {
         return userRepository.findAll();
@@ -45,7 +49,8 @@ public class UserService {
         if (userDto.getEmail().isBlank() && userDto.getName().isBlank()) {
             throw new ValidationException();
         }
-        return userRepository.save(UserMapper.toUser(userDto));
+        // С последовательностью INSERT откладывается до коммита, а нарушения email/валидации нужны сразу
+        return userRepository.saveAndFlush(UserMapper.toUser(userDto));
     }
 
     @Transactional
@@ -71,6 +76,9 @@ public class UserService {
 
     @Transactional
     public void deleteUser(long id) {
+        Set<Long> itemIds = new HashSet<>(userRepository.findOwnedItemIds(id));
+        itemIds.addAll(userRepository.findBookedItemIds(id));
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserDeletedEvent(id, itemIds));
     }
 }
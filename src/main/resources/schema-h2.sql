@@ -0,0 +1,28 @@
+-- В H2 нет частичных индексов (см. schema-postgresql.sql), фаза идёт в составной индекс
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_PHASE_START ON bookings (booker_id, phase, start_booking DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_OWNER_PHASE_START ON bookings (owner_id, phase, start_booking DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_PHASE_START ON bookings (phase, start_booking);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_PHASE_END ON bookings (phase, end_booking);
+
+-- Базы, созданные до появления bookings.owner_id: ограничения из schema.sql
+ALTER TABLE items ADD CONSTRAINT IF NOT EXISTS UQ_ITEMS_ID_USER UNIQUE (id, user_id);
+ALTER TABLE bookings ADD CONSTRAINT IF NOT EXISTS FK_BOOKINGS_ITEM_OWNER FOREIGN KEY (item_id, owner_id)
+    REFERENCES items (id, user_id) ON UPDATE CASCADE ON DELETE CASCADE;
+
+-- Базы, созданные до перехода на последовательности: id больше не берётся из IDENTITY, а следующее значение
+-- последовательности (верхняя граница блока из 50 id) ставится за уже выданные id, но не назад
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE items ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE bookings ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE comments ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE item_request ALTER COLUMN id DROP IDENTITY;
+ALTER SEQUENCE users_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 50,
+    (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'USERS_SEQ')) FROM users);
+ALTER SEQUENCE items_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 50,
+    (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'ITEMS_SEQ')) FROM items);
+ALTER SEQUENCE bookings_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 50,
+    (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'BOOKINGS_SEQ')) FROM bookings);
+ALTER SEQUENCE comments_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 50,
+    (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'COMMENTS_SEQ')) FROM comments);
+ALTER SEQUENCE item_request_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 50,
+    (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'ITEM_REQUEST_SEQ')) FROM item_request);
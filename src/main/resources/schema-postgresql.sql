@@ -0,0 +1,59 @@
+-- Только для PostgreSQL: пересечение подтверждённых бронирований одной вещи запрещено на уровне базы.
+-- Ожидающие запросы могут пересекаться, из них выбирает владелец; прежнее ограничение захватывало и WAITING
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+ALTER TABLE bookings DROP CONSTRAINT IF EXISTS ex_bookings_item_period;
+DO '
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''ex_bookings_item_approved_period'') THEN
+        ALTER TABLE bookings ADD CONSTRAINT ex_bookings_item_approved_period EXCLUDE USING gist
+            (item_id WITH =, tsrange(start_booking, end_booking) WITH &&)
+            WHERE (status = ''APPROVED'');
+    END IF;
+END';
+
+-- Базы, созданные до появления bookings.owner_id: CREATE TABLE IF NOT EXISTS не добавил ограничения из schema.sql
+DO '
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''uq_items_id_user'') THEN
+        ALTER TABLE items ADD CONSTRAINT UQ_ITEMS_ID_USER UNIQUE (id, user_id);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''fk_bookings_item_owner'') THEN
+        ALTER TABLE bookings ADD CONSTRAINT FK_BOOKINGS_ITEM_OWNER FOREIGN KEY (item_id, owner_id)
+            REFERENCES items (id, user_id) ON UPDATE CASCADE ON DELETE CASCADE;
+    END IF;
+END';
+
+-- Базы, созданные до перехода на последовательности: id больше не берётся из IDENTITY, а последовательность
+-- сдвигается за уже выданные id. Назад она не сдвигается: блоки, взятые работающими экземплярами, остаются за ними
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bookings ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE comments ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE item_request ALTER COLUMN id DROP IDENTITY IF EXISTS;
+SELECT setval('users_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM users), (SELECT last_value FROM users_seq), 1));
+SELECT setval('items_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM items), (SELECT last_value FROM items_seq), 1));
+SELECT setval('bookings_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bookings), (SELECT last_value FROM bookings_seq), 1));
+SELECT setval('comments_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM comments), (SELECT last_value FROM comments_seq), 1));
+SELECT setval('item_request_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM item_request), (SELECT last_value FROM item_request_seq), 1));
+
+-- Частичные индексы по фазам: каждый содержит только строки своей фазы
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_FUTURE ON bookings (booker_id, start_booking DESC) WHERE phase = 'FUTURE';
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_CURRENT ON bookings (booker_id, start_booking DESC) WHERE phase = 'CURRENT';
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_PAST ON bookings (booker_id, start_booking DESC) WHERE phase = 'PAST';
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_OWNER_FUTURE ON bookings (owner_id, start_booking DESC) WHERE phase = 'FUTURE';
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_OWNER_CURRENT ON bookings (owner_id, start_booking DESC) WHERE phase = 'CURRENT';
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_OWNER_PAST ON bookings (owner_id, start_booking DESC) WHERE phase = 'PAST';
+-- Очередь планировщика фаз
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_FUTURE_START ON bookings (start_booking) WHERE phase = 'FUTURE';
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ACTIVE_END ON bookings (end_booking) WHERE phase IN ('FUTURE', 'CURRENT');
+-- Поиск свободных вещей: проверка подтверждённых бронирований вещи, пересекающих период, читает только индекс
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ITEM_APPROVED_PERIOD ON bookings (item_id, start_booking, end_booking)
+    WHERE status = 'APPROVED';
+CREATE INDEX IF NOT EXISTS IDX_ITEM_BOOKING_SUMMARY_STALE ON item_booking_summary (item_id) WHERE stale;
+
+-- Полнотекстовый поиск вещей: вектор пересчитывается самой базой при вставке и изменении строки
+ALTER TABLE items ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(description, '')), 'B')) STORED;
+CREATE INDEX IF NOT EXISTS IDX_ITEMS_SEARCH ON items USING gin (search_vector);
@@ -1,30 +1,43 @@
+-- Шаг 50 совпадает с allocationSize в сущностях: Hibernate берёт из последовательности сразу блок идентификаторов
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS items_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bookings_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS comments_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS item_request_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS users (
-id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
+id BIGINT PRIMARY KEY NOT NULL,
 name VARCHAR(255) NOT NULL,
 email VARCHAR(512) NOT NULL,
 CONSTRAINT UQ_USER_EMAIL UNIQUE (email)
 );
 
 CREATE TABLE IF NOT EXISTS items (
-id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
+id BIGINT PRIMARY KEY NOT NULL,
 name VARCHAR(255) NOT NULL,
 description VARCHAR(1000) NOT NULL,
 available Boolean NOT NULL,
 user_id BIGINT REFERENCES users (id) ON DELETE CASCADE NOT NULL,
-request_id BIGINT
+request_id BIGINT,
+CONSTRAINT UQ_ITEMS_ID_USER UNIQUE (id, user_id)
 );
 
 CREATE TABLE IF NOT EXISTS bookings (
-id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
+id BIGINT PRIMARY KEY NOT NULL,
 item_id BIGINT REFERENCES items (id) ON DELETE CASCADE,
 booker_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
+owner_id BIGINT,
 status VARCHAR,
 start_booking TIMESTAMP WITHOUT TIME ZONE,
-end_booking TIMESTAMP WITHOUT TIME ZONE
+end_booking TIMESTAMP WITHOUT TIME ZONE,
+version BIGINT DEFAULT 0 NOT NULL,
+phase VARCHAR(16) DEFAULT 'FUTURE' NOT NULL,
+CONSTRAINT FK_BOOKINGS_ITEM_OWNER FOREIGN KEY (item_id, owner_id) REFERENCES items (id, user_id)
+    ON UPDATE CASCADE ON DELETE CASCADE
 );
 
 CREATE TABLE IF NOT EXISTS comments (
-id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL,
+id BIGINT PRIMARY KEY NOT NULL,
 text VARCHAR,
 item_id BIGINT REFERENCES items (id) ON DELETE CASCADE,
 author_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
@@ -32,10 +45,57 @@ created TIMESTAMP WITH TIME ZONE
 );
 
 CREATE TABLE IF NOT EXISTS item_request (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    id BIGINT NOT NULL,
     description VARCHAR(512) NOT NULL,
     requestor_id BIGINT NOT NULL,
     created TIMESTAMP NOT NULL,
     CONSTRAINT PK_ITEM_REQUEST PRIMARY KEY (id),
     CONSTRAINT FK_ITEM_REQUEST_FOR_REQUESTER FOREIGN KEY (requestor_id) REFERENCES users (id)
 );
+
+CREATE TABLE IF NOT EXISTS item_booking_summary (
+item_id BIGINT PRIMARY KEY REFERENCES items (id) ON DELETE CASCADE,
+last_booking_id BIGINT,
+last_booker_id BIGINT,
+last_start TIMESTAMP WITHOUT TIME ZONE,
+last_end TIMESTAMP WITHOUT TIME ZONE,
+next_booking_id BIGINT,
+next_booker_id BIGINT,
+next_start TIMESTAMP WITHOUT TIME ZONE,
+next_end TIMESTAMP WITHOUT TIME ZONE,
+stale BOOLEAN DEFAULT FALSE NOT NULL
+);
+
+-- Вещи, созданные до появления сводки, получают пустую устаревшую строку: её заполнит планировщик
+INSERT INTO item_booking_summary (item_id, stale)
+SELECT i.id, TRUE FROM items i
+WHERE NOT EXISTS (SELECT 1 FROM item_booking_summary s WHERE s.item_id = i.id);
+
+-- Базы, созданные до появления bookings.owner_id: колонка заполняется владельцем вещи,
+-- составной внешний ключ добавляет скрипт платформы
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS owner_id BIGINT;
+UPDATE bookings b SET owner_id = (SELECT i.user_id FROM items i WHERE i.id = b.item_id) WHERE b.owner_id IS NULL;
+-- Базы, созданные до появления bookings.version: у старых строк версия 0
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+-- Базы, созданные до появления bookings.phase: старые строки получают FUTURE, BookingPhaseScheduler переводит их
+-- первым проходом, а до этого выборки по состоянию точны за счёт сравнения со временем (см. BookingSpecifications)
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS phase VARCHAR(16) DEFAULT 'FUTURE' NOT NULL;
+
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_START ON bookings (booker_id, start_booking DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_STATUS_START ON bookings (booker_id, status, start_booking DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_OWNER_START ON bookings (owner_id, start_booking DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_OWNER_STATUS_START ON bookings (owner_id, status, start_booking DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ITEM_START ON bookings (item_id, start_booking);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ITEM_END ON bookings (item_id, end_booking);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ITEM_STATUS_START ON bookings (item_id, status, start_booking);
+
+CREATE INDEX IF NOT EXISTS IDX_ITEMS_USER ON items (user_id, id);
+CREATE INDEX IF NOT EXISTS IDX_ITEMS_REQUEST ON items (request_id);
+
+CREATE INDEX IF NOT EXISTS IDX_COMMENTS_ITEM_CREATED ON comments (item_id, created DESC);
+CREATE INDEX IF NOT EXISTS IDX_COMMENTS_AUTHOR ON comments (author_id);
+
+CREATE INDEX IF NOT EXISTS IDX_ITEM_REQUEST_REQUESTOR_CREATED ON item_request (requestor_id, created DESC);
+CREATE INDEX IF NOT EXISTS IDX_ITEM_REQUEST_CREATED ON item_request (created DESC);
+
+CREATE INDEX IF NOT EXISTS IDX_ITEM_BOOKING_SUMMARY_NEXT_START ON item_booking_summary (next_start);
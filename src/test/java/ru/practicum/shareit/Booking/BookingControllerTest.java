@@ -10,8 +10,11 @@ import org.springframework.test.web.servlet.MockMvc;
 import ru.practicum.shareit.booking.BookingController;
 import ru.practicum.shareit.booking.BookingService;
 import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingBatchUpdateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingShortDto;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
 import ru.practicum.shareit.item.dto.ItemMapper;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.dto.UserDto;
@@ -44,7 +47,7 @@ public class BookingControllerTest {
 
     private BookingShortDto bookingShortDto = new BookingShortDto(1L, LocalDateTime.now().plusMinutes(10),
             LocalDateTime.now().plusHours(1),
-            new Item(1L, "testItem", "desc1", true, 1L, null),
+            new ItemDtoShort(1L, "testItem"),
             new UserDtoShort(1L), 2L, BookingStatus.WAITING);
 
     private BookingDto bookingDto = new BookingDto(1L,  LocalDateTime.now().plusMinutes(10),
@@ -143,6 +146,21 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$.[0].status", is(bookingDto.getStatus().toString())));
     }
 
+    @Test
+    void getBookingsByUserWithCursor() throws Exception {
+        when(bookingService.getByUserIdAfter(any(Long.class), any(String.class),
+                any(String.class), nullable(Integer.class)))
+                .thenReturn(List.of(bookingShortDto));
+
+        mvc.perform(get("/bookings?cursor=abc&size=1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andExpect(jsonPath("$.[0].id", is(bookingDto.getId()), Long.class));
+    }
+
     @Test
     void updateBooking() throws Exception {
         when(bookingService.updateBooking(any(Long.class), any(Long.class), any(Boolean.class)))
@@ -163,4 +181,46 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$.status", is(bookingDto.getStatus().toString())));
     }
 
+    @Test
+    void createBookingsInBatch() throws Exception {
+        when(bookingService.createBookings(any(Long.class), any()))
+                .thenReturn(List.of(new BookingBatchResultDto(null, null, "Вещь не найдена")));
+        mvc.perform(post("/bookings/batch")
+                        .content(mapper.writeValueAsString(List.of(bookingDto)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].error", is("Вещь не найдена")));
+
+        when(bookingService.createBookings(any(Long.class), any()))
+                .thenReturn(List.of(new BookingBatchResultDto(1L, BookingStatus.WAITING, null)));
+        mvc.perform(post("/bookings/batch")
+                        .content(mapper.writeValueAsString(List.of(bookingDto)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookingId", is(1L), Long.class));
+    }
+
+    @Test
+    void updateBookings() throws Exception {
+        BookingBatchUpdateDto batch = new BookingBatchUpdateDto(List.of(1L, 2L), true);
+        when(bookingService.updateBookings(any(Long.class), any()))
+                .thenReturn(List.of(new BookingBatchResultDto(1L, BookingStatus.APPROVED, null),
+                        new BookingBatchResultDto(2L, null, "Бронирование не найдено")));
+        mvc.perform(patch("/bookings/batch")
+                        .content(mapper.writeValueAsString(batch))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookingId", is(1L), Long.class))
+                .andExpect(jsonPath("$[0].status", is("APPROVED")))
+                .andExpect(jsonPath("$[1].error", is("Бронирование не найдено")));
+    }
 }
@@ -2,16 +2,24 @@ package ru.practicum.shareit.Booking;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingCursor;
+import ru.practicum.shareit.booking.BookingPhaseScheduler;
 import ru.practicum.shareit.booking.BookingService;
 import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingBatchUpdateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingShortDto;
+import ru.practicum.shareit.error.model.ConflictException;
 import ru.practicum.shareit.item.ItemService;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.comment.CommentMapper;
@@ -21,10 +29,19 @@ import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.EntityManager;
 import javax.validation.ValidationException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static java.lang.Thread.sleep;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -39,6 +56,9 @@ public class BookingJpaTest {
     private final UserService userService;
     private final ItemService itemService;
     private final BookingService bookingService;
+    private final BookingPhaseScheduler bookingPhaseScheduler;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
 
     private UserDto userDto1 = new UserDto(100L, "Max", "max@mail.ru");
     private UserDto userDto2 = new UserDto(101L, "Ivan", "ivan@ya.ru");
@@ -135,8 +155,11 @@ public class BookingJpaTest {
         BookingDto updatedBooking = bookingService.updateBooking(user.getId(), bookingDto.getId(), false);
 
         assertThat(updatedBooking.getStatus(), equalTo(BookingStatus.REJECTED));
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.updateBooking(user.getId(), bookingDto.getId(), true));
 
-        BookingDto updatedBooking2 = bookingService.updateBooking(user.getId(), bookingDto.getId(), true);
+        BookingDto secondBooking = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        BookingDto updatedBooking2 = bookingService.updateBooking(user.getId(), secondBooking.getId(), true);
 
         assertThat(updatedBooking2.getStatus(), equalTo(BookingStatus.APPROVED));
     }
@@ -257,7 +280,6 @@ public class BookingJpaTest {
                 ValidationException.class,
                 () -> bookingService.updateBooking(user.getId(), bookingDto.getId(), true));
 
-        bookingService.updateBooking(user.getId(), bookingDto.getId(), false);
         final ValidationException exception3 = Assertions.assertThrows(
                 ValidationException.class,
                 () -> bookingService.updateBooking(user.getId(), bookingDto.getId(), false));
@@ -326,4 +348,313 @@ public class BookingJpaTest {
 
         assertThat(bookingShortDtos.size(), equalTo(1));
     }
+
+    @Test
+    void shouldGetBookingsByUserWithCursor() {
+        for (int i = 1; i <= 3; i++) {
+            bookingDtoStart.setStart(LocalDateTime.now().plusSeconds(5L * i));
+            bookingDtoStart.setEnd(LocalDateTime.now().plusSeconds(5L * i + 4));
+            bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        }
+        List<BookingShortDto> firstPage = bookingService.getByUserId(secondUser.getId(), "ALL", 0, 2);
+        String cursor = BookingCursor.next(firstPage, 2);
+        List<BookingShortDto> secondPage = bookingService.getByUserIdAfter(secondUser.getId(), "ALL", cursor, 2);
+
+        assertThat(firstPage.size(), equalTo(2));
+        assertThat(secondPage.size(), equalTo(1));
+        assertThat(BookingCursor.next(secondPage, 2), equalTo(null));
+        assertThat(secondPage.get(0).getStart().isBefore(firstPage.get(1).getStart()), equalTo(true));
+    }
+
+    @Test
+    void shouldGetBookingsByOwnerWithCursor() {
+        for (int i = 1; i <= 3; i++) {
+            bookingDtoStart.setStart(LocalDateTime.now().plusSeconds(5L * i));
+            bookingDtoStart.setEnd(LocalDateTime.now().plusSeconds(5L * i + 4));
+            bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        }
+        List<BookingShortDto> firstPage = bookingService.getByOwnerIdAfter(user.getId(), "FUTURE", "", 2);
+        String cursor = BookingCursor.next(firstPage, 2);
+        List<BookingShortDto> secondPage = bookingService.getByOwnerIdAfter(user.getId(), "FUTURE", cursor, 2);
+
+        assertThat(firstPage.size(), equalTo(2));
+        assertThat(secondPage.size(), equalTo(1));
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.getByOwnerIdAfter(user.getId(), "FUTURE", "broken", 2));
+    }
+
+    @Test
+    void shouldProjectBookingListWithoutLoadingEntities() {
+        bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<BookingShortDto> bookings = bookingService.getByOwnerId(user.getId(), "ALL", 0, 10);
+
+        assertThat(bookings.get(0).getItem().getName(), equalTo("Hummer"));
+        assertThat(bookings.get(0).getBooker().getId(), equalTo(secondUser.getId()));
+        // владелец проверяется через findUserById, других сущностей в контексте быть не должно
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount(), equalTo(1));
+    }
+
+    @Test
+    void shouldGetBookingsBySeveralStates() {
+        bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        bookingDtoStart.setStart(LocalDateTime.now().minusSeconds(10));
+        bookingDtoStart.setEnd(LocalDateTime.now().minusSeconds(5));
+        bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+
+        assertThat(bookingService.getByUserId(secondUser.getId(), "CURRENT,FUTURE", 0, 10).size(), equalTo(1));
+        assertThat(bookingService.getByUserId(secondUser.getId(), "PAST, FUTURE", 0, 10).size(), equalTo(2));
+        assertThat(bookingService.getByOwnerId(user.getId(), "PAST,WAITING", 0, 10).size(), equalTo(2));
+        assertThat(bookingService.countByOwnerId(user.getId(), "CURRENT,PAST"), equalTo(1L));
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.getByOwnerId(user.getId(), "PAST,UNKNOWN", 0, 10));
+    }
+
+    @Test
+    void shouldCountBookingsByState() {
+        BookingDto bookingDto = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        bookingService.updateBooking(user.getId(), bookingDto.getId(), false);
+
+        assertThat(bookingService.countByOwnerId(user.getId(), "ALL"), equalTo(1L));
+        assertThat(bookingService.countByOwnerId(user.getId(), "REJECTED"), equalTo(1L));
+        assertThat(bookingService.countByOwnerId(user.getId(), "WAITING"), equalTo(0L));
+        assertThat(bookingService.countByUserId(secondUser.getId(), "FUTURE"), equalTo(1L));
+        assertThat(bookingService.countByUserId(secondUser.getId(), "PAST"), equalTo(0L));
+    }
+
+    @Test
+    void shouldMoveBookingsWithItemOwner() {
+        bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        User thirdUser = userService.createUser(new UserDto(102L, "Petr", "petr@ya.ru"));
+        entityManager.flush();
+
+        jdbcTemplate.update("update items set user_id = ? where id = ?", thirdUser.getId(), item.getId());
+        entityManager.clear();
+
+        assertThat(jdbcTemplate.queryForObject("select owner_id from bookings where item_id = ?",
+                Long.class, item.getId()), equalTo(thirdUser.getId()));
+        assertThat(bookingService.getByOwnerId(thirdUser.getId(), "ALL", 0, 10).size(), equalTo(1));
+        assertThat(bookingService.getByOwnerId(user.getId(), "ALL", 0, 10).size(), equalTo(0));
+    }
+
+    @Test
+    void shouldAdvanceBookingPhases() {
+        BookingDto past = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        BookingDto current = bookingService.createBooking(secondUser.getId(), new BookingDto(null,
+                bookingDtoStart.getEnd(), bookingDtoStart.getEnd().plusSeconds(4), null, null, null,
+                item.getId(), null));
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("update bookings set start_booking = ?, end_booking = ? where id = ?",
+                now.minusHours(2), now.minusHours(1), past.getId());
+        jdbcTemplate.update("update bookings set start_booking = ?, end_booking = ? where id = ?",
+                now.minusHours(1), now.plusHours(1), current.getId());
+
+        assertThat(bookingService.getByUserId(secondUser.getId(), "PAST", 0, 10).get(0).getId(),
+                equalTo(past.getId()));
+        assertThat(bookingService.getByUserId(secondUser.getId(), "CURRENT", 0, 10).get(0).getId(),
+                equalTo(current.getId()));
+        assertThat(bookingService.getByUserId(secondUser.getId(), "FUTURE", 0, 10).size(), equalTo(0));
+
+        assertThat(bookingPhaseScheduler.advancePhases(now), equalTo(2));
+        assertThat(bookingPhaseScheduler.advancePhases(now), equalTo(0));
+        assertThat(jdbcTemplate.queryForObject("select phase from bookings where id = ?", String.class,
+                past.getId()), equalTo("PAST"));
+        assertThat(jdbcTemplate.queryForObject("select phase from bookings where id = ?", String.class,
+                current.getId()), equalTo("CURRENT"));
+        assertThat(bookingService.getByOwnerId(user.getId(), "CURRENT", 0, 10).get(0).getId(),
+                equalTo(current.getId()));
+    }
+
+    @Test
+    void shouldCreateBookingsInBatch() {
+        Item secondItem = itemService.createItem(itemDto2, user.getId());
+        BookingDto secondDto = new BookingDto(null, bookingDtoStart.getStart(), bookingDtoStart.getEnd(),
+                null, null, null, secondItem.getId(), null);
+
+        List<BookingBatchResultDto> results = bookingService.createBookings(secondUser.getId(),
+                List.of(bookingDtoStart, secondDto));
+
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.get(0).getStatus(), equalTo(BookingStatus.WAITING));
+        assertThat(results.get(1).getError(), equalTo(null));
+        assertThat(bookingService.getByUserId(secondUser.getId(), "ALL", 0, 10).size(), equalTo(2));
+    }
+
+    @Test
+    void shouldNotCreateAnyBookingIfOneInBatchIsInvalid() {
+        BookingDto missingItem = new BookingDto(null, bookingDtoStart.getStart(), bookingDtoStart.getEnd(),
+                null, null, null, 999L, null);
+
+        List<BookingBatchResultDto> results = bookingService.createBookings(secondUser.getId(),
+                List.of(bookingDtoStart, missingItem));
+
+        assertThat(results.get(0).getBookingId(), equalTo(null));
+        assertThat(results.get(1).getError(), equalTo("Вещь не найдена"));
+        assertThat(bookingService.getByUserId(secondUser.getId(), "ALL", 0, 10).size(), equalTo(0));
+        assertThat(bookingService.createBookings(user.getId(), List.of(bookingDtoStart)).get(0).getError(),
+                equalTo("Владелец вещи не может бронировать свою вещь"));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> bookingService.createBookings(999L, List.of(bookingDtoStart)));
+    }
+
+    @Test
+    void shouldNotApproveOverlappingBookings() {
+        BookingDto first = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        BookingDto overlapping = new BookingDto(null, bookingDtoStart.getStart().plusSeconds(2),
+                bookingDtoStart.getEnd().plusSeconds(2), null, null, null, item.getId(), null);
+        BookingDto adjacent = new BookingDto(null, bookingDtoStart.getEnd(), bookingDtoStart.getEnd().plusSeconds(4),
+                null, null, null, item.getId(), null);
+
+        BookingDto second = bookingService.createBooking(secondUser.getId(), overlapping);
+        assertThat(second.getStatus(), equalTo(BookingStatus.WAITING));
+
+        bookingService.updateBooking(user.getId(), first.getId(), true);
+        Assertions.assertThrows(ConflictException.class,
+                () -> bookingService.createBooking(secondUser.getId(), overlapping));
+        List<BookingBatchResultDto> results = bookingService.createBookings(secondUser.getId(),
+                List.of(overlapping, adjacent));
+        assertThat(results.get(0).getError(), equalTo("Вещь уже забронирована на это время"));
+        assertThat(results.get(1).getError(), equalTo("Пакет отклонён из-за ошибок в других бронированиях"));
+
+        // откат отклонённого подтверждения проверяется в тесте с конкурентными подтверждениями
+        Assertions.assertThrows(ConflictException.class,
+                () -> bookingService.updateBooking(user.getId(), second.getId(), true));
+    }
+
+    @Test
+    void shouldApproveOnlyFirstOfOverlappingBookingsInBatch() {
+        BookingDto overlapping = new BookingDto(null, bookingDtoStart.getStart().plusSeconds(2),
+                bookingDtoStart.getEnd().plusSeconds(2), null, null, null, item.getId(), null);
+        BookingDto adjacent = new BookingDto(null, bookingDtoStart.getEnd(), bookingDtoStart.getEnd().plusSeconds(4),
+                null, null, null, item.getId(), null);
+        List<Long> ids = bookingService.createBookings(secondUser.getId(),
+                        List.of(bookingDtoStart, overlapping, adjacent)).stream()
+                .map(BookingBatchResultDto::getBookingId)
+                .collect(Collectors.toList());
+
+        List<BookingBatchResultDto> results = bookingService.updateBookings(user.getId(),
+                new BookingBatchUpdateDto(ids, true));
+
+        assertThat(results.get(0).getStatus(), equalTo(BookingStatus.APPROVED));
+        assertThat(results.get(1).getStatus(), equalTo(BookingStatus.WAITING));
+        assertThat(results.get(1).getError(), equalTo("Вещь уже забронирована на это время"));
+        assertThat(results.get(2).getStatus(), equalTo(BookingStatus.APPROVED));
+        assertThat(bookingService.getById(user.getId(), ids.get(1)).getStatus(), equalTo(BookingStatus.WAITING));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldApproveOnlyOneOfConcurrentOverlappingBookings() throws Exception {
+        int attempts = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            LocalDateTime base = LocalDateTime.now().plusDays(1);
+            List<BookingDto> bookingDtos = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                // все интервалы содержат промежуток [base + 50 мин, base + 60 мин) и попарно пересекаются
+                bookingDtos.add(new BookingDto(null, base.plusMinutes(i % 50), base.plusMinutes(60 + i % 50),
+                        null, null, null, item.getId(), null));
+            }
+            List<BookingBatchResultDto> created = bookingService.createBookings(secondUser.getId(), bookingDtos);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BookingDto>> results = new ArrayList<>();
+            for (BookingBatchResultDto booking : created) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return bookingService.updateBooking(user.getId(), booking.getBookingId(), true);
+                }));
+            }
+            start.countDown();
+
+            int approved = 0;
+            for (Future<BookingDto> result : results) {
+                try {
+                    result.get();
+                    approved++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause() instanceof ConflictException, equalTo(true));
+                }
+            }
+            assertThat(approved, equalTo(1));
+            assertThat(bookingService.getByUserId(secondUser.getId(), "WAITING", 0, attempts).size(),
+                    equalTo(attempts - 1));
+        } finally {
+            executor.shutdown();
+            userService.deleteUser(user.getId());
+            userService.deleteUser(secondUser.getId());
+        }
+    }
+
+    @Test
+    void shouldUpdateBookingsInBatch() {
+        BookingDto first = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        BookingDto second = bookingService.createBooking(secondUser.getId(), new BookingDto(null,
+                bookingDtoStart.getEnd(), bookingDtoStart.getEnd().plusSeconds(4), null, null, null,
+                bookingDtoStart.getItemId(), null));
+        bookingService.updateBooking(user.getId(), second.getId(), false);
+
+        List<BookingBatchResultDto> results = bookingService.updateBookings(user.getId(),
+                new BookingBatchUpdateDto(List.of(first.getId(), second.getId(), 999L), true));
+
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.get(0).getStatus(), equalTo(BookingStatus.APPROVED));
+        assertThat(results.get(1).getStatus(), equalTo(BookingStatus.REJECTED));
+        assertThat(results.get(1).getError() != null, equalTo(true));
+        assertThat(results.get(2).getError(), equalTo("Бронирование не найдено"));
+        assertThat(bookingService.getById(user.getId(), first.getId()).getStatus(), equalTo(BookingStatus.APPROVED));
+        assertThat(bookingService.updateBookings(secondUser.getId(),
+                new BookingBatchUpdateDto(List.of(first.getId()), false)).get(0).getError(),
+                equalTo("Бронирование не найдено"));
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.updateBookings(user.getId(), new BookingBatchUpdateDto(List.of(), true)));
+    }
+
+    @Test
+    void shouldUpdateBatchLargerThanBindParameterLimit() {
+        BookingDto booking = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+        List<Long> ids = LongStream.range(1_000_000, 1_040_000).boxed().collect(Collectors.toList());
+        ids.add(booking.getId());
+
+        List<BookingBatchResultDto> results = bookingService.updateBookings(user.getId(),
+                new BookingBatchUpdateDto(ids, true));
+
+        assertThat(results.size(), equalTo(ids.size()));
+        assertThat(results.get(ids.size() - 1).getStatus(), equalTo(BookingStatus.APPROVED));
+        assertThat(bookingService.getById(user.getId(), booking.getId()).getStatus(), equalTo(BookingStatus.APPROVED));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldApplyOnlyOneOfConcurrentUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BookingDto bookingDto = bookingService.createBooking(secondUser.getId(), bookingDtoStart);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BookingDto>> results = new ArrayList<>();
+            for (boolean approved : new boolean[]{true, false}) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return bookingService.updateBooking(user.getId(), bookingDto.getId(), approved);
+                }));
+            }
+            start.countDown();
+
+            int applied = 0;
+            for (Future<BookingDto> result : results) {
+                try {
+                    result.get();
+                    applied++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause() instanceof ValidationException, equalTo(true));
+                }
+            }
+            assertThat(applied, equalTo(1));
+        } finally {
+            executor.shutdown();
+            userService.deleteUser(user.getId());
+            userService.deleteUser(secondUser.getId());
+        }
+    }
 }
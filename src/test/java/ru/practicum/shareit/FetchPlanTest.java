@@ -0,0 +1,195 @@
+package ru.practicum.shareit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingService;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.comment.Comment;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.ItemRequestService;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Страница списка должна читаться фиксированным числом запросов, сколько бы строк в ней ни было.
+ */
+@Slf4j
+@SpringBootTest
+@Transactional
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FetchPlanTest {
+    private static final int ROWS = 10;
+
+    private final UserService userService;
+    private final ItemService itemService;
+    private final BookingService bookingService;
+    private final ItemRequestService itemRequestService;
+    private final EntityManager entityManager;
+    private Statistics statistics;
+    private User owner;
+    private User requestor;
+
+    @BeforeEach
+    void set() {
+        owner = userService.createUser(new UserDto(null, "Max", "max@mail.ru"));
+        requestor = userService.createUser(new UserDto(null, "Ivan", "ivan@ya.ru"));
+        statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+
+    @Test
+    void shouldReadItemsWithCommentsInConstantQueries() {
+        for (int i = 0; i < ROWS; i++) {
+            Item item = itemService.createItem(new ItemDto(null, "Hummer " + i, "Small", true,
+                    null, null, null, null), owner.getId());
+            User author = userService.createUser(new UserDto(null, "Author " + i, "author" + i + "@ya.ru"));
+            Comment comment = new Comment();
+            comment.setText("Comment " + i);
+            comment.setItem(item);
+            comment.setAuthor(author);
+            comment.setCreated(LocalDateTime.now());
+            entityManager.persist(comment);
+        }
+
+        long statements = countStatements(() -> {
+            List<ItemDto> items = itemService.getItemsByOwner(owner.getId(), 0, ROWS);
+            assertThat(items.get(ROWS - 1).getComments().get(0).getAuthorName(), equalTo("Author " + (ROWS - 1)));
+        });
+
+        assertThat(statements, lessThanOrEqualTo(4L));
+    }
+
+    @Test
+    void shouldReadOwnerItemsWithBookingsInOneQuery() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ROWS; i++) {
+            Item item = itemService.createItem(new ItemDto(null, "Hummer " + i, "Small", true,
+                    null, null, null, null), owner.getId());
+            for (int j = 0; j < 3; j++) {
+                BookingDto booking = bookingService.createBooking(requestor.getId(), new BookingDto(null,
+                        now.plusDays(j - 1), now.plusDays(j - 1).plusHours(1), null, null, null, item.getId(), null));
+                bookingService.updateBooking(owner.getId(), booking.getId(), true);
+            }
+        }
+
+        long statements = countStatements(() -> {
+            List<ItemDto> items = itemService.getItemsByOwner(owner.getId(), 0, ROWS);
+            assertThat(items.size(), equalTo(ROWS));
+            assertThat(items.get(ROWS - 1).getLastBooking() != null, equalTo(true));
+            assertThat(items.get(ROWS - 1).getNextBooking() != null, equalTo(true));
+        });
+
+        // пользователь и одна выборка вещей со сводками; отзывов нет, их запрос пропускается
+        assertThat(statements, lessThanOrEqualTo(2L));
+    }
+
+    @Test
+    void shouldRecomputeStaleSummariesOfPageInOneQuery() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ROWS; i++) {
+            Item item = itemService.createItem(new ItemDto(null, "Hummer " + i, "Small", true,
+                    null, null, null, null), owner.getId());
+            for (int j = 0; j < 3; j++) {
+                BookingDto booking = bookingService.createBooking(requestor.getId(), new BookingDto(null,
+                        now.plusDays(j - 1), now.plusDays(j - 1).plusHours(1), null, null, null, item.getId(), null));
+                bookingService.updateBooking(owner.getId(), booking.getId(), true);
+            }
+        }
+        // планировщик ещё не дошёл до сводок
+        entityManager.createQuery("update ItemBookingSummary s set s.stale = true").executeUpdate();
+
+        long statements = countStatements(() -> {
+            List<ItemDto> items = itemService.getItemsByOwner(owner.getId(), 0, ROWS);
+            assertThat(items.size(), equalTo(ROWS));
+            assertThat(items.get(ROWS - 1).getLastBooking().getStart().isAfter(now), equalTo(false));
+            assertThat(items.get(ROWS - 1).getNextBooking().getStart().isAfter(now), equalTo(true));
+        });
+
+        // пользователь, выборка вещей со сводками и один пересчёт всех устаревших сводок страницы
+        assertThat(statements, lessThanOrEqualTo(3L));
+    }
+
+    @Test
+    void shouldCreateBookingWithOneItemReadPastCache() {
+        Item item = itemService.createItem(new ItemDto(null, "Hummer", "Small", true,
+                null, null, null, null), owner.getId());
+        itemService.findItemById(item.getId(), requestor.getId());
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        bookingService.createBooking(requestor.getId(), new BookingDto(null, start, start.plusHours(1),
+                null, null, null, item.getId(), null));
+        entityManager.flush();
+
+        // вещь в кэше, но запись бронирования читает её из базы один раз: доступность, владелец и маппер
+        assertThat(statistics.getEntityStatistics(Item.class.getName()).getLoadCount(), equalTo(1L));
+    }
+
+    @Test
+    void shouldDecideBookingWithUpdateAndOneRead() {
+        Item item = itemService.createItem(new ItemDto(null, "Hummer", "Small", true,
+                null, null, null, null), owner.getId());
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        BookingDto booking = bookingService.createBooking(requestor.getId(), new BookingDto(null, start,
+                start.plusHours(1), null, null, null, item.getId(), null));
+
+        long statements = countStatements(() -> {
+            BookingDto rejected = bookingService.updateBooking(owner.getId(), booking.getId(), false);
+            assertThat(rejected.getItem().getName(), equalTo("Hummer"));
+        });
+
+        // условный UPDATE и чтение брони с вещью и автором для ответа
+        assertThat(statements, equalTo(2L));
+    }
+
+    @Test
+    void shouldReadItemRequestsWithItemsInConstantQueries() {
+        for (int i = 0; i < ROWS; i++) {
+            ItemRequestDto request = itemRequestService.create(new ItemRequestDto(null, "Need " + i,
+                    null, null, null), requestor.getId(), LocalDateTime.now());
+            itemService.createItem(new ItemDto(null, "Hummer " + i, "Small", true,
+                    request.getId(), null, null, null), owner.getId());
+        }
+
+        long statements = countStatements(() -> {
+            List<ItemRequestDto> requests = itemRequestService.getAllItemRequests(owner.getId(), 0, ROWS);
+            assertThat(requests.size(), equalTo(ROWS));
+            assertThat(requests.get(0).getItems().size(), equalTo(1));
+            assertThat(requests.get(0).getRequestor().getName(), equalTo("Ivan"));
+        });
+
+        assertThat(statements, lessThanOrEqualTo(3L));
+    }
+
+    private long countStatements(Runnable action) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        action.run();
+        long statements = statistics.getPrepareStatementCount();
+        log.info("Выполнено запросов: {}", statements);
+        return statements;
+    }
+}
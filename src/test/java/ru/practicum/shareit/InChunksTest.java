@@ -0,0 +1,74 @@
+package ru.practicum.shareit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.item.ItemService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+@SpringBootTest
+@Transactional
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class InChunksTest {
+    private final ItemService itemService;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    void shouldSplitValuesIntoChunks() {
+        List<Long> values = LongStream.range(0, 2 * InChunks.CHUNK_SIZE + 1).boxed().collect(Collectors.toList());
+        List<Integer> sizes = new ArrayList<>();
+
+        List<Long> result = InChunks.query(values, chunk -> {
+            sizes.add(chunk.size());
+            return chunk;
+        });
+
+        assertThat(result, equalTo(values));
+        assertThat(sizes, equalTo(List.of(InChunks.CHUNK_SIZE, InChunks.CHUNK_SIZE, 1)));
+    }
+
+    @Test
+    void shouldSumUpdatedRowsOverChunks() {
+        List<Long> values = LongStream.range(0, InChunks.CHUNK_SIZE + 10).boxed().collect(Collectors.toList());
+        List<Integer> sizes = new ArrayList<>();
+
+        int updated = InChunks.update(values, chunk -> {
+            sizes.add(chunk.size());
+            return chunk.size();
+        });
+
+        assertThat(updated, equalTo(values.size()));
+        assertThat(sizes, equalTo(List.of(InChunks.CHUNK_SIZE, 10)));
+    }
+
+    @Test
+    void shouldQueryMoreIdsThanBindParameterLimit() {
+        List<Long> requestIds = LongStream.range(0, 40_000).boxed().collect(Collectors.toList());
+
+        assertThat(itemService.getItemsByRequestIds(requestIds).size(), equalTo(0));
+    }
+
+    @Test
+    void shouldExposeQueryPlanCacheMetrics() {
+        for (int size = 1; size <= 20; size++) {
+            itemService.getItemsByRequestIds(LongStream.range(0, size).boxed().collect(Collectors.toList()));
+        }
+
+        assertThat(meterRegistry.find("hibernate.cache.query.plan").tag("result", "hit").functionCounter(),
+                notNullValue());
+        assertThat(meterRegistry.get("hibernate.cache.query.plan").tag("result", "hit").functionCounter().count(),
+                greaterThan(0.0));
+    }
+}
@@ -11,6 +11,8 @@ import ru.practicum.shareit.item.ItemController;
 import ru.practicum.shareit.item.ItemService;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
 
@@ -102,6 +104,22 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.[0].available", is(itemDto.getAvailable())));
     }
 
+    @Test
+    void getItemsByOwnerWithTotal() throws Exception {
+        when(itemService.getItemsByOwner(any(Long.class), any(Integer.class), nullable(Integer.class)))
+                .thenReturn(List.of(itemDto));
+        when(itemService.countItemsByOwner(any(Long.class)))
+                .thenReturn(7L);
+        mvc.perform(get("/items?from=0&size=1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1)
+                        .header("X-Include-Total", true))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "7"))
+                .andExpect(jsonPath("$.[0].id", is(itemDto.getId()), Long.class));
+    }
+
     @Test
     void updateItem() throws Exception {
         when(itemService.updateItem(any(Long.class), any(), any(Long.class)))
@@ -139,6 +157,41 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.[0].available", is(item.getAvailable())));
     }
 
+    @Test
+    void getItemsByFuzzySearchQuery() throws Exception {
+        when(itemService.searchFuzzy(any(String.class), any(Integer.class), nullable(Integer.class)))
+                .thenReturn(List.of(item));
+        mvc.perform(get("/items/search?text=descripton&fuzzy=true")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id", is(item.getId()), Long.class));
+    }
+
+    @Test
+    void getItemsFreeDuringPeriod() throws Exception {
+        when(itemService.searchFree("drill", LocalDateTime.of(2030, 1, 4, 10, 0), LocalDateTime.of(2030, 1, 6, 10, 0),
+                0, null)).thenReturn(List.of(item));
+        mvc.perform(get("/items/search?text=drill&start=2030-01-04T10:00:00&end=2030-01-06T10:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id", is(item.getId()), Long.class));
+        mvc.perform(get("/items/search?text=drill&fuzzy=true&start=2030-01-04T10:00:00&end=2030-01-06T10:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getSuggestions() throws Exception {
+        when(itemService.suggest("dri", 5)).thenReturn(List.of(new ItemDtoShort(1L, "Drill")));
+        mvc.perform(get("/items/suggest?prefix=dri&size=5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id", is(1L), Long.class))
+                .andExpect(jsonPath("$.[0].name", is("Drill")));
+    }
+
     @Test
     void createComment() throws Exception {
         when(itemService.createComment(any(), any(Long.class), any(Long.class)))
@@ -156,4 +209,18 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.created",
                         is(commentDto.getCreated().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))));
     }
+
+    @Test
+    void getAvailability() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 10, 0);
+        when(itemService.getAvailability(any(Long.class), any(), any()))
+                .thenReturn(List.of(new TimeSlotDto(from, from.plusHours(2))));
+        mvc.perform(get("/items/1/availability")
+                        .param("from", "2030-01-01T10:00:00")
+                        .param("to", "2030-01-01T12:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start", is("2030-01-01T10:00:00")))
+                .andExpect(jsonPath("$[0].end", is("2030-01-01T12:00:00")));
+    }
 }
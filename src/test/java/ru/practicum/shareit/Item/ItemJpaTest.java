@@ -1,5 +1,6 @@
 package ru.practicum.shareit.Item;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
@@ -7,28 +8,48 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingRepository;
 import ru.practicum.shareit.booking.BookingService;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.summary.ItemBookingSummary;
+import ru.practicum.shareit.booking.summary.ItemBookingSummaryRepository;
+import ru.practicum.shareit.booking.summary.ItemBookingSummaryService;
+import ru.practicum.shareit.item.ItemCache;
+import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.ItemService;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.comment.CommentMapper;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSuggestIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 
 import javax.validation.ValidationException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.lang.Thread.sleep;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @Slf4j
 @SpringBootTest
@@ -39,6 +60,11 @@ public class ItemJpaTest {
     private final ItemService itemService;
     private final UserService userService;
     private final BookingService bookingService;
+    private final ItemBookingSummaryService summaryService;
+    private final ItemBookingSummaryRepository summaryRepository;
+    private final ItemSuggestIndex itemSuggestIndex;
+    private final SearchResultCache searchResultCache;
+    private final MeterRegistry meterRegistry;
     private UserDto userDto1 = new UserDto(100L, "Max", "max@mail.ru");
     private UserDto userDto2 = new UserDto(101L, "Ivan", "ivan@ya.ru");
     private ItemDto itemDto1 = new ItemDto(101L, "Hummer", "Small", true, null, null, null, null);
@@ -148,6 +174,198 @@ public class ItemJpaTest {
         assertEquals(1, listItems.size());
     }
 
+    @Test
+    void shouldSearchOnlyAvailableItemsWithNameMatchesFirst() {
+        Item byDescription = itemService.createItem(new ItemDto(null, "Box", "Hummer case", true,
+                null, null, null, null), user.getId());
+        Item byName = itemService.createItem(itemDto1, user.getId());
+        itemService.createItem(new ItemDto(null, "Hummer XL", "Broken", false, null, null, null, null), user.getId());
+
+        List<Item> listItems = itemService.searchByText("HUMMER", 0, 10);
+
+        assertThat(listItems.size(), equalTo(2));
+        assertThat(listItems.get(0).getId(), equalTo(byName.getId()));
+        assertThat(listItems.get(1).getId(), equalTo(byDescription.getId()));
+        assertThat(itemService.countSearchResults("hummer"), equalTo(2L));
+    }
+
+    @Test
+    void shouldCacheSearchPagesUntilMatchingItemChanges() {
+        Item hummer = itemService.createItem(itemDto1, user.getId());
+        Item fork = itemService.createItem(itemDto2, user.getId());
+        double hits = cacheGets(SearchResultCache.NAME, "hit");
+        double misses = cacheGets(SearchResultCache.NAME, "miss");
+
+        assertThat(itemService.searchByText("hum", 0, 10).size(), equalTo(1));
+        assertThat(itemService.searchByText("HUM", 0, 10).size(), equalTo(1));
+        assertThat(cacheGets(SearchResultCache.NAME, "miss") - misses, equalTo(1.0));
+        assertThat(cacheGets(SearchResultCache.NAME, "hit") - hits, equalTo(1.0));
+
+        // вещь не подходит под запрос - страница остаётся в кэше
+        itemService.updateItem(fork.getId(), new ItemDto(null, "Spoon", null, null, null, null, null, null),
+                user.getId());
+        assertThat(itemService.searchByText("hum", 0, 10).size(), equalTo(1));
+        assertThat(cacheGets(SearchResultCache.NAME, "hit") - hits, equalTo(2.0));
+
+        itemService.createItem(new ItemDto(null, "Box", "For humidifier", true, null, null, null, null),
+                user.getId());
+        assertThat(itemService.searchByText("hum", 0, 10).size(), equalTo(2));
+
+        itemService.updateItem(hummer.getId(), new ItemDto(null, null, null, false, null, null, null, null),
+                user.getId());
+        assertThat(itemService.searchByText("hum", 0, 10).size(), equalTo(1));
+        assertThat(cacheGets(SearchResultCache.NAME, "hit") - hits, equalTo(2.0));
+    }
+
+    @Test
+    void shouldNotCachePageLoadedDuringMatchingItemChange() throws Exception {
+        Item hummer = itemService.createItem(itemDto1, user.getId());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // поиск прочитал базу до изменения вещи и возвращает результат уже после сброса кэша
+            Future<List<Item>> slow = executor.submit(() -> searchResultCache.get("hum", 0, 10, () -> {
+                loading.countDown();
+                try {
+                    changed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of(hummer);
+            }));
+            loading.await();
+            searchResultCache.itemChanged(hummer, null);
+            changed.countDown();
+            assertThat(slow.get().size(), equalTo(1));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(searchResultCache.get("hum", 0, 10, List::of).size(), equalTo(0));
+    }
+
+    @Test
+    void shouldServeRepeatedItemLookupsFromCache() {
+        Item item = itemService.createItem(itemDto1, user.getId());
+        double hits = cacheGets(ItemCache.NAME, "hit");
+
+        itemService.findItemById(item.getId(), user.getId());
+        Item found = itemService.findItemById(item.getId(), user.getId());
+        assertThat(cacheGets(ItemCache.NAME, "hit") - hits, equalTo(1.0));
+
+        // наружу отдаётся копия
+        found.setName("Changed");
+        assertThat(itemService.findItemById(item.getId(), user.getId()).getName(), equalTo("Hummer"));
+
+        itemService.updateItem(item.getId(), new ItemDto(null, "Drill", null, null, null, null, null, null),
+                user.getId());
+        assertThat(itemService.findItemById(item.getId(), user.getId()).getName(), equalTo("Drill"));
+        assertThat(itemService.findItemDtoById(item.getId(), user.getId()).getName(), equalTo("Drill"));
+    }
+
+    private double cacheGets(String cache, String result) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", result)
+                .functionCounter().count();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldSuggestAvailableItemsByPopularity() {
+        User booker = userService.createUser(userDto2);
+        try {
+            Item drill = itemService.createItem(new ItemDto(null, "Drill", "Small", true, null, null, null, null),
+                    user.getId());
+            Item driver = itemService.createItem(new ItemDto(null, "Driver", "Tiny", true, null, null, null, null),
+                    user.getId());
+            itemService.createItem(new ItemDto(null, "Drum", "Loud", false, null, null, null, null), user.getId());
+            LocalDateTime start = LocalDateTime.now().plusDays(1);
+            bookingService.createBooking(booker.getId(), new BookingDto(null, start, start.plusHours(1),
+                    null, null, null, driver.getId(), null));
+
+            List<ItemDtoShort> suggestions = itemService.suggest("DR", 10);
+            assertThat(suggestions.size(), equalTo(2));
+            assertThat(suggestions.get(0).getId(), equalTo(driver.getId()));
+            assertThat(suggestions.get(1).getId(), equalTo(drill.getId()));
+            assertThat(itemService.suggest("dri", 1).size(), equalTo(1));
+            assertThat(itemService.suggest("drum", 10).size(), equalTo(0));
+
+            itemService.updateItem(drill.getId(), new ItemDto(null, "Hammer", null, null, null, null, null, null),
+                    user.getId());
+            assertThat(itemService.suggest("dr", 10).size(), equalTo(1));
+            assertThat(itemService.suggest("ham", 10).get(0).getName(), equalTo("Hammer"));
+
+            itemService.updateItem(driver.getId(), new ItemDto(null, null, null, false, null, null, null, null),
+                    user.getId());
+            assertThat(itemService.suggest("dr", 10).size(), equalTo(0));
+
+            itemSuggestIndex.rebuild();
+            assertThat(itemService.suggest("ham", 10).get(0).getId(), equalTo(drill.getId()));
+            assertThat(itemService.suggest("dr", 10).size(), equalTo(0));
+        } finally {
+            userService.deleteUser(booker.getId());
+            userService.deleteUser(user.getId());
+        }
+        assertThat(itemService.suggest("ham", 10).size(), equalTo(0));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldKeepChangesCommittedWhileSuggestIndexIsRebuilt() {
+        ItemRepository repository = mock(ItemRepository.class);
+        ItemSuggestIndex index = new ItemSuggestIndex(repository, mock(BookingRepository.class));
+        Item loaded = new Item(1L, "Drill", "Small", true, user.getId(), null);
+        Item saved = new Item(2L, "Driver", "Tiny", true, user.getId(), null);
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyLong(), any())).thenAnswer(invocation -> {
+            // вещь создана и забронирована, пока дерево читает базу
+            index.itemSaved(saved);
+            index.itemBooked(saved.getId());
+            return List.of(loaded);
+        });
+
+        try {
+            index.rebuild();
+
+            List<ItemDtoShort> suggestions = index.suggest("dr", 10);
+            assertThat(suggestions.size(), equalTo(2));
+            assertThat(suggestions.get(0).getId(), equalTo(saved.getId()));
+            assertThat(suggestions.get(1).getId(), equalTo(loaded.getId()));
+        } finally {
+            userService.deleteUser(user.getId());
+        }
+    }
+
+    @Test
+    void shouldSearchItemsFreeDuringPeriod() {
+        User booker = userService.createUser(userDto2);
+        Item booked = itemService.createItem(new ItemDto(null, "Drill A", "Small", true, null, null, null, null),
+                user.getId());
+        Item waiting = itemService.createItem(new ItemDto(null, "Drill B", "Small", true, null, null, null, null),
+                user.getId());
+        Item bookedLater = itemService.createItem(new ItemDto(null, "Drill C", "Small", true, null, null, null, null),
+                user.getId());
+        LocalDateTime start = LocalDateTime.now().plusDays(5).truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime end = start.plusDays(2);
+        BookingDto inPeriod = bookingService.createBooking(booker.getId(), new BookingDto(null,
+                start.plusDays(1), end.plusDays(1), null, null, null, booked.getId(), null));
+        bookingService.updateBooking(user.getId(), inPeriod.getId(), true);
+        bookingService.createBooking(booker.getId(), new BookingDto(null, start, end,
+                null, null, null, waiting.getId(), null));
+        // заканчивается ровно в начале периода и не пересекается с ним
+        BookingDto before = bookingService.createBooking(booker.getId(), new BookingDto(null,
+                start.minusDays(1), start, null, null, null, bookedLater.getId(), null));
+        bookingService.updateBooking(user.getId(), before.getId(), true);
+
+        List<Item> free = itemService.searchFree("DRILL", start, end, 0, 10);
+
+        assertThat(free.size(), equalTo(2));
+        assertThat(free.get(0).getId(), equalTo(waiting.getId()));
+        assertThat(free.get(1).getId(), equalTo(bookedLater.getId()));
+        assertThat(itemService.countFreeSearchResults("drill", start, end), equalTo(2L));
+        assertThat(itemService.searchFree("drill", end.plusDays(1), end.plusDays(2), 0, 10).size(), equalTo(3));
+        Assertions.assertThrows(ValidationException.class, () -> itemService.searchFree("drill", end, start, 0, 10));
+    }
+
     @Test
     void shouldGetItemsBySearchWithEmptyText() {
         itemService.createItem(itemDto1, user.getId());
@@ -234,4 +452,105 @@ public class ItemJpaTest {
         ItemDto itemDto = itemService.findItemDtoById(item.getId(), user.getId());
         assertThat(item.getName(), equalTo(itemDto.getName()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnLastAndNextBookingFromSummary() {
+        Item item = itemService.createItem(itemDto1, user.getId());
+        User booker = userService.createUser(userDto2);
+        LocalDateTime now = LocalDateTime.now();
+        BookingDto past = bookingService.createBooking(booker.getId(), new BookingDto(null, now.minusHours(3),
+                now.minusHours(2), null, null, null, item.getId(), null));
+        BookingDto next = bookingService.createBooking(booker.getId(), new BookingDto(null, now.plusDays(1),
+                now.plusDays(1).plusHours(1), null, null, null, item.getId(), null));
+        BookingDto later = bookingService.createBooking(booker.getId(), new BookingDto(null, now.plusDays(2),
+                now.plusDays(2).plusHours(1), null, null, null, item.getId(), null));
+        bookingService.createBooking(booker.getId(), new BookingDto(null, now.plusHours(1),
+                now.plusHours(2), null, null, null, item.getId(), null));
+        bookingService.updateBooking(user.getId(), past.getId(), true);
+        bookingService.updateBooking(user.getId(), next.getId(), true);
+        bookingService.updateBooking(user.getId(), later.getId(), true);
+
+        ItemDto itemDto = itemService.findItemDtoById(item.getId(), user.getId());
+
+        assertThat(itemDto.getLastBooking().getId(), equalTo(past.getId()));
+        assertThat(itemDto.getNextBooking().getId(), equalTo(next.getId()));
+        assertThat(itemDto.getNextBooking().getBookerId(), equalTo(booker.getId()));
+        assertThat(itemService.findItemDtoById(item.getId(), booker.getId()).getNextBooking(), equalTo(null));
+        assertThat(itemService.getItemsByOwner(user.getId(), 0, 10).get(0).getNextBooking(),
+                equalTo(itemDto.getNextBooking()));
+
+        LocalDateTime tomorrow = now.plusDays(1).plusMinutes(30);
+        ItemBookingSummary stale = summaryService.findByItemIds(List.of(item.getId()), tomorrow).get(item.getId());
+        assertThat(stale.getLastBookingId(), equalTo(next.getId()));
+        assertThat(stale.getNextBookingId(), equalTo(later.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldStoreRefreshedSummariesOutsideCallerTransaction() {
+        User booker = userService.createUser(userDto2);
+        try {
+            Item item = itemService.createItem(itemDto1, user.getId());
+            LocalDateTime now = LocalDateTime.now();
+            BookingDto next = bookingService.createBooking(booker.getId(), new BookingDto(null, now.plusHours(1),
+                    now.plusHours(2), null, null, null, item.getId(), null));
+            bookingService.updateBooking(user.getId(), next.getId(), true);
+            LocalDateTime tomorrow = now.plusDays(1);
+            assertThat(summaryRepository.findById(item.getId()).orElseThrow().isStale(tomorrow), equalTo(true));
+
+            assertThat(summaryService.refreshStale(tomorrow), equalTo(1));
+
+            ItemBookingSummary summary = summaryRepository.findById(item.getId()).orElseThrow();
+            assertThat(summary.isStale(tomorrow), equalTo(false));
+            assertThat(summary.getLastBookingId(), equalTo(next.getId()));
+            assertThat(summaryService.refreshStale(tomorrow), equalTo(0));
+        } finally {
+            userService.deleteUser(booker.getId());
+            userService.deleteUser(user.getId());
+        }
+    }
+
+    @Test
+    void shouldReturnFreeSlotsAroundBookings() {
+        Item item = itemService.createItem(itemDto1, user.getId());
+        User booker = userService.createUser(userDto2);
+        LocalDateTime base = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.HOURS);
+        bookingService.createBooking(booker.getId(), new BookingDto(null, base.plusHours(1), base.plusHours(2),
+                null, null, null, item.getId(), null));
+        bookingService.createBooking(booker.getId(), new BookingDto(null, base.plusHours(2), base.plusHours(3),
+                null, null, null, item.getId(), null));
+        BookingDto late = bookingService.createBooking(booker.getId(), new BookingDto(null, base.plusHours(5),
+                base.plusHours(6), null, null, null, item.getId(), null));
+
+        List<TimeSlotDto> slots = itemService.getAvailability(item.getId(), base, base.plusHours(8));
+
+        assertThat(slots, equalTo(List.of(new TimeSlotDto(base, base.plusHours(1)),
+                new TimeSlotDto(base.plusHours(3), base.plusHours(5)),
+                new TimeSlotDto(base.plusHours(6), base.plusHours(8)))));
+
+        bookingService.updateBooking(user.getId(), late.getId(), false);
+
+        assertThat(itemService.getAvailability(item.getId(), base.plusHours(2), base.plusHours(8)),
+                equalTo(List.of(new TimeSlotDto(base.plusHours(3), base.plusHours(8)))));
+        Assertions.assertThrows(ValidationException.class,
+                () -> itemService.getAvailability(item.getId(), base, base));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> itemService.getAvailability(-1L, base, base.plusHours(1)));
+    }
+
+    @Test
+    void shouldReturnPastBookingsThatCachedTimelineDropped() {
+        Item item = itemService.createItem(itemDto1, user.getId());
+        User booker = userService.createUser(userDto2);
+        LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        bookingService.createBooking(booker.getId(), new BookingDto(null, base.minusHours(3), base.minusHours(2),
+                null, null, null, item.getId(), null));
+        assertThat(itemService.getAvailability(item.getId(), base.plusHours(1), base.plusHours(2)),
+                equalTo(List.of(new TimeSlotDto(base.plusHours(1), base.plusHours(2)))));
+
+        List<TimeSlotDto> slots = itemService.getAvailability(item.getId(), base.minusHours(4), base.minusHours(1));
+
+        assertThat(slots, equalTo(List.of(new TimeSlotDto(base.minusHours(4), base.minusHours(3)),
+                new TimeSlotDto(base.minusHours(2), base.minusHours(1)))));
+    }
+}
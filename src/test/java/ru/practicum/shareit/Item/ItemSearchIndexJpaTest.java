@@ -0,0 +1,110 @@
+package ru.practicum.shareit.Item;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.TrigramItemIndex;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Поиск по индексу триграмм в памяти: в профиле test выбран like, индекс включается явно.
+ */
+@SpringBootTest(properties = "shareit.item.search=memory")
+@Transactional
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ItemSearchIndexJpaTest {
+
+    private final ItemService itemService;
+    private final UserService userService;
+    private final TrigramItemIndex trigramItemIndex;
+    private ItemDto itemDto1 = new ItemDto(101L, "Hummer", "Small", true, null, null, null, null);
+    private ItemDto itemDto2 = new ItemDto(102L, "Fork", "Tiny", true, null, null, null, null);
+    private User user;
+
+    @BeforeEach
+    void set() {
+        user = userService.createUser(new UserDto(100L, "Max", "max@mail.ru"));
+    }
+
+    @Test
+    void shouldKeepSearchIndexInSyncWithItems() {
+        Item item = itemService.createItem(itemDto1, user.getId());
+        itemService.updateItem(item.getId(), new ItemDto(null, "Drill", null, null, null, null, null, null),
+                user.getId());
+
+        assertThat(itemService.searchByText("hummer", 0, 10).size(), equalTo(0));
+        assertThat(itemService.searchByText("dri", 0, 10).get(0).getName(), equalTo("Drill"));
+        assertThat(itemService.searchByText("ll", 0, 10).size(), equalTo(1));
+
+        itemService.updateItem(item.getId(), new ItemDto(null, null, null, false, null, null, null, null),
+                user.getId());
+        assertThat(itemService.searchByText("drill", 0, 10).size(), equalTo(0));
+
+        itemService.createItem(itemDto2, user.getId());
+        trigramItemIndex.rebuild();
+        assertThat(itemService.searchByText("fork", 0, 10).size(), equalTo(1));
+        assertThat(itemService.searchByText("small", 0, 10).size(), equalTo(0));
+        assertThat(itemService.countSearchResults("small"), equalTo(0L));
+    }
+
+    @Test
+    void shouldKeepItemSavedWhileSearchIndexIsRebuilt() {
+        ItemRepository repository = mock(ItemRepository.class);
+        TrigramItemIndex index = new TrigramItemIndex(repository);
+        Item loaded = new Item(1L, "Hummer", "Small", true, user.getId(), null);
+        Item saved = new Item(2L, "Fork", "Tiny", true, user.getId(), null);
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyLong(), any())).thenAnswer(invocation -> {
+            // вещь сохранена, пока индекс читает базу, и в прочитанную страницу не попала
+            index.itemSaved(saved);
+            return List.of(loaded);
+        });
+
+        index.rebuild();
+
+        assertThat(index.count("hummer"), equalTo(1L));
+        assertThat(index.count("fork"), equalTo(1L));
+    }
+
+    @Test
+    void shouldFindItemsWithTyposInFuzzySearch() {
+        Item drill = itemService.createItem(new ItemDto(null, "Electric drill", "Powerful cordless tool", true,
+                null, null, null, null), user.getId());
+        Item kit = itemService.createItem(new ItemDto(null, "Dril kit", "Electric, with case", true,
+                null, null, null, null), user.getId());
+        itemService.createItem(new ItemDto(null, "Electric saw", "Broken", false, null, null, null, null),
+                user.getId());
+
+        List<Item> listItems = itemService.searchFuzzy("elektric dril", 0, 10);
+
+        // у набора одно слово совпало точно, поэтому он выше
+        assertThat(listItems.size(), equalTo(2));
+        assertThat(listItems.get(0).getId(), equalTo(kit.getId()));
+        assertThat(listItems.get(1).getId(), equalTo(drill.getId()));
+        assertThat(itemService.countFuzzySearchResults("elektric dril"), equalTo(2L));
+        assertThat(itemService.searchByText("elektric", 0, 10).size(), equalTo(0));
+        assertThat(itemService.searchFuzzy("cordles tol", 0, 10).get(0).getId(), equalTo(drill.getId()));
+
+        itemService.updateItem(drill.getId(), new ItemDto(null, "Hammer", "Heavy", null, null, null, null, null),
+                user.getId());
+        assertThat(itemService.searchFuzzy("elektric dril", 0, 10).size(), equalTo(1));
+        assertThat(itemService.searchFuzzy("hamer", 0, 10).get(0).getId(), equalTo(drill.getId()));
+    }
+}
@@ -122,7 +122,7 @@ public class ItemRequestJpaTest {
                 LocalDateTime.of(2023, 9, 21, 18, 0, 0));
 
         List<ItemRequestDto> list = itemRequestService.getAllItemRequests(user2.getId(),  0, null);
-        assertThat(list.size(), equalTo(4));
+        assertThat(list.size(), equalTo(2));
     }
 
 }
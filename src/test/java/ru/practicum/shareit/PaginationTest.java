@@ -3,6 +3,8 @@ package ru.practicum.shareit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,10 +12,12 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.BookingService;
 import ru.practicum.shareit.item.ItemService;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.EntityManager;
 import javax.validation.ValidationException;
 import java.util.List;
 
@@ -29,6 +33,7 @@ public class PaginationTest {
     private final ItemService itemService;
     private final UserService userService;
     private final BookingService bookingService;
+    private final EntityManager entityManager;
     private UserDto userDto1 = new UserDto(100L, "Max", "max@mail.ru");
     private UserDto userDto2 = new UserDto(101L, "Ivan", "ivan@ya.ru");
     private ItemDto itemDto1 = new ItemDto(101L, "Hummer", "Small", true, null, null, null, null);
@@ -54,4 +59,29 @@ public class PaginationTest {
         List<ItemDto> items = itemService.getItemsByOwner(user.getId(), 1, 1);
         assertThat(items.size(), equalTo(1));
     }
+
+    @Test
+    void shouldReadOnlyRequestedRowsPerPage() {
+        User user = userService.createUser(userDto1);
+        for (int i = 0; i < 30; i++) {
+            itemService.createItem(new ItemDto(null, "Hummer " + i, "Small", true,
+                    null, null, null, null), user.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<ItemDto> items = itemService.getItemsByOwner(user.getId(), 15, 5);
+        long rowsRead = statistics.getEntityStatistics(Item.class.getName()).getLoadCount();
+
+        log.info("Items page from=15 size=5: {} rows read", rowsRead);
+        statistics.setStatisticsEnabled(false);
+        assertThat(items.size(), equalTo(5));
+        assertThat(items.get(0).getName(), equalTo("Hummer 15"));
+        assertThat(rowsRead, equalTo(5L));
+    }
 }
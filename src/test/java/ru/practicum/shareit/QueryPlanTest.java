@@ -0,0 +1,103 @@
+package ru.practicum.shareit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Снимает планы горячих запросов репозиториев и падает, если какой-то из них
+ * перестал искать по индексу и ушёл в полный просмотр таблицы.
+ */
+@Slf4j
+@SpringBootTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryPlanTest {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("bookings by booker",
+                        "select * from bookings b where b.booker_id = 1" +
+                                " order by b.start_booking desc, b.id desc limit 10",
+                        "BOOKER_ID ="),
+                Arguments.of("future bookings by booker",
+                        "select * from bookings b where b.booker_id = 1 and b.start_booking > now()" +
+                                " order by b.start_booking desc, b.id desc limit 10",
+                        "BOOKER_ID ="),
+                Arguments.of("bookings by booker and status",
+                        "select * from bookings b where b.booker_id = 1 and b.status = 'WAITING'" +
+                                " order by b.start_booking desc, b.id desc limit 10",
+                        "BOOKER_ID ="),
+                Arguments.of("current bookings by booker",
+                        "select * from bookings b where b.booker_id = 1 and b.phase = 'CURRENT'" +
+                                " order by b.start_booking desc, b.id desc limit 10",
+                        "BOOKER_ID ="),
+                Arguments.of("bookings due to start",
+                        "select id from bookings b where b.phase = 'FUTURE' and b.start_booking < now()" +
+                                " order by b.id limit 500",
+                        "PHASE ="),
+                Arguments.of("bookings by item owner",
+                        "select * from bookings b where b.owner_id = 1" +
+                                " order by b.start_booking desc, b.id desc limit 10",
+                        "OWNER_ID ="),
+                Arguments.of("bookings by item owner and status",
+                        "select * from bookings b where b.owner_id = 1 and b.status = 'WAITING'" +
+                                " order by b.start_booking desc, b.id desc limit 10",
+                        "OWNER_ID ="),
+                Arguments.of("last booking of item",
+                        "select * from bookings b where b.item_id = 1 and b.end_booking < now()" +
+                                " order by b.end_booking desc limit 1",
+                        "ITEM_ID ="),
+                Arguments.of("next booking of item",
+                        "select * from bookings b where b.item_id = 1 and b.start_booking > now()" +
+                                " order by b.start_booking limit 1",
+                        "ITEM_ID ="),
+                Arguments.of("approved booking of item overlapping period",
+                        "select 1 from bookings b where b.item_id = 1 and b.status = 'APPROVED'" +
+                                " and b.start_booking < timestamp '2030-01-03 00:00:00'" +
+                                " and b.end_booking > timestamp '2030-01-01 00:00:00'",
+                        "ITEM_ID ="),
+                Arguments.of("approved bookings of items",
+                        "select * from bookings b where b.item_id in (1, 2, 3) and b.status = 'APPROVED'" +
+                                " order by b.start_booking desc",
+                        "ITEM_ID IN"),
+                Arguments.of("items by owner",
+                        "select * from items i where i.user_id = 1 order by i.id limit 10",
+                        "USER_ID ="),
+                Arguments.of("items by request",
+                        "select * from items i where i.request_id = 1 order by i.id desc",
+                        "REQUEST_ID ="),
+                Arguments.of("comments of item",
+                        "select * from comments c where c.item_id = 1",
+                        "ITEM_ID ="),
+                Arguments.of("comments of items",
+                        "select * from comments c where c.item_id in (1, 2, 3) order by c.created desc",
+                        "ITEM_ID IN"),
+                Arguments.of("own item requests",
+                        "select * from item_request r where r.requestor_id = 1 order by r.created desc",
+                        "REQUESTOR_ID =")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void shouldUseIndex(String name, String sql, String indexCondition) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+        log.info("План запроса '{}':\n{}", name, plan);
+
+        assertThat(plan, containsString(indexCondition));
+        assertThat(plan, not(containsString("tableScan")));
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.shareit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
+import ru.practicum.shareit.booking.BookingPhase;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.item.dto.TimeSlotDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Свободные промежутки вещи за сутки: индекс в памяти против запроса к базе с тем же расчётом промежутков.
+ * Запуск: mvn -P benchmark verify -Dbenchmark=AvailabilityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 0, 0);
+    private static final String OVERLAPPING = "select start_booking, end_booking from bookings" +
+            " where item_id = ? and status in ('WAITING', 'APPROVED') and start_booking < ? and end_booking > ?" +
+            " order by start_booking";
+
+    @Param({"1000", "100000"})
+    private int bookings;
+
+    private BenchmarkContext app;
+    private BookingIntervalIndex intervalIndex;
+    private JdbcTemplate jdbcTemplate;
+    private long itemId;
+    private int window;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        app = BenchmarkContext.start("availability-benchmark");
+        intervalIndex = app.getBean(BookingIntervalIndex.class);
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+
+        User owner = app.persistUser("Owner");
+        User booker = app.persistUser("Booker");
+        Item item = app.persist(new Item(0, "Drill", "Benchmark item", true, owner.getId(), null));
+        itemId = item.getId();
+        // бронирование на час каждые два часа
+        app.inBatches(bookings, i -> {
+            Booking booking = new Booking();
+            booking.setItem(item);
+            booking.setOwnerId(owner.getId());
+            booking.setBooker(booker);
+            booking.setStart(BASE.plusHours(2L * i));
+            booking.setEnd(BASE.plusHours(2L * i + 1));
+            booking.setStatus(i % 2 == 0 ? BookingStatus.APPROVED : BookingStatus.WAITING);
+            booking.setPhase(BookingPhase.FUTURE);
+            app.entityManager().persist(booking);
+        });
+        intervalIndex.freeSlots(itemId, BASE, BASE.plusDays(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        app.close();
+    }
+
+    @Benchmark
+    public List<TimeSlotDto> index() {
+        LocalDateTime from = nextWindow();
+        return intervalIndex.freeSlots(itemId, from, from.plusDays(1));
+    }
+
+    @Benchmark
+    public List<TimeSlotDto> sql() {
+        LocalDateTime from = nextWindow();
+        LocalDateTime to = from.plusDays(1);
+        List<TimeSlotDto> slots = new ArrayList<>();
+        LocalDateTime[] cursor = {from};
+        jdbcTemplate.query(OVERLAPPING, rs -> {
+            LocalDateTime start = rs.getTimestamp(1).toLocalDateTime();
+            LocalDateTime end = rs.getTimestamp(2).toLocalDateTime();
+            if (start.isAfter(cursor[0])) {
+                slots.add(new TimeSlotDto(cursor[0], start));
+            }
+            if (end.isAfter(cursor[0])) {
+                cursor[0] = end;
+            }
+        }, itemId, Timestamp.valueOf(to), Timestamp.valueOf(from));
+        if (cursor[0].isBefore(to)) {
+            slots.add(new TimeSlotDto(cursor[0], to));
+        }
+        return slots;
+    }
+
+    private LocalDateTime nextWindow() {
+        window = (window + 7919) % bookings;
+        return BASE.plusHours(2L * window);
+    }
+}
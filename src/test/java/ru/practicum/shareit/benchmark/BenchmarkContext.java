@@ -0,0 +1,96 @@
+package ru.practicum.shareit.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Приложение для замеров с базой: контекст без веб-сервера, тестовые пользователи и пакетное заполнение таблиц.
+ * По умолчанию база - H2 в памяти. Если задан BENCHMARK_POSTGRES_URL (пользователь и пароль - в
+ * SPRING_DATASOURCE_USERNAME и SPRING_DATASOURCE_PASSWORD), контекст стартует без профиля test на этой
+ * PostgreSQL, а close() удаляет созданных пользователей вместе с их данными.
+ */
+final class BenchmarkContext implements AutoCloseable {
+    private static final int FLUSH_EVERY = 1_000;
+    private static final String POSTGRES_URL = System.getenv("BENCHMARK_POSTGRES_URL");
+
+    private final ConfigurableApplicationContext context;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.entityManager = context.getBean(EntityManager.class);
+        this.transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    /**
+     * database - имя базы H2 в памяти. Свойства передаются аргументами командной строки: значения из
+     * SpringApplicationBuilder.properties() перекрываются application.properties.
+     */
+    static BenchmarkContext start(String database, String... properties) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN");
+        List<String> args = new ArrayList<>();
+        Arrays.stream(properties).forEach(property -> args.add("--" + property));
+        if (POSTGRES_URL == null) {
+            builder.profiles("test");
+            args.add("--spring.datasource.url=jdbc:h2:mem:" + database);
+        } else {
+            args.add("--spring.datasource.url=" + POSTGRES_URL);
+        }
+        return new BenchmarkContext(builder.run(args.toArray(new String[0])));
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    EntityManager entityManager() {
+        return entityManager;
+    }
+
+    User persistUser(String name) {
+        return persist(new User(0, name, name.toLowerCase() + "@benchmark.ru"));
+    }
+
+    <T> T persist(T entity) {
+        transactionTemplate.executeWithoutResult(status -> entityManager.persist(entity));
+        return entity;
+    }
+
+    /**
+     * Вызывает row для строк от 0 до rows - 1 в одной транзакции. Каждые FLUSH_EVERY строк изменения
+     * отправляются в базу, а контекст сохранения очищается, чтобы не рос: сущности, полученные до этого,
+     * дальше годятся только как ссылки.
+     */
+    void inBatches(int rows, IntConsumer row) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < rows; i++) {
+                row.accept(i);
+                if ((i + 1) % FLUSH_EVERY == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        // база PostgreSQL переживает прогон, вещи, бронирования и отзывы удаляются каскадом
+        context.getBean(JdbcTemplate.class).update("delete from users where email like '%@benchmark.ru'");
+        context.close();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.shareit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import ru.practicum.shareit.Pagination;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.TrigramItemIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нечёткий поиск в индексе в памяти, первая страница из 20 вещей; режим SampleTime даёт перцентили, в том числе p99.
+ * Индекс заполняется через itemSaved, как при создании вещей, без базы: миллион вещей в H2 не нужен для замера.
+ * Словарь - 50 000 искусственных слов, в каждом слове запроса одна опечатка.
+ * Запуск: mvn -P benchmark verify -Dbenchmark=FuzzySearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class FuzzySearchBenchmark {
+    private static final String[] SYLLABLES = {"ka", "ro", "mi", "te", "lu", "sa", "po", "ne", "di", "va", "gor",
+            "tin", "bel", "mar", "sto", "kle", "pra", "dun", "fi", "zo"};
+    private static final int VOCABULARY = 50_000;
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    private int items;
+
+    private TrigramItemIndex index;
+    private String[] fuzzyQueries;
+    private String[] exactQueries;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        Random random = new Random(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int j = 0; j < syllables; j++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+
+        index = new TrigramItemIndex(null);
+        for (int i = 1; i <= items; i++) {
+            String name = words[random.nextInt(VOCABULARY)] + " " + words[random.nextInt(VOCABULARY)];
+            String description = words[random.nextInt(VOCABULARY)] + " " + words[random.nextInt(VOCABULARY)] + " "
+                    + words[random.nextInt(VOCABULARY)] + " model " + (i * 31);
+            index.itemSaved(new Item(i, name, description, i % 10 != 0, 1L, null));
+        }
+
+        fuzzyQueries = new String[QUERIES];
+        exactQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String first = words[random.nextInt(VOCABULARY)];
+            String second = words[random.nextInt(VOCABULARY)];
+            exactQueries[i] = i % 2 == 0 ? first : first + " " + second;
+            fuzzyQueries[i] = i % 2 == 0 ? typo(first, random) : typo(first, random) + " " + typo(second, random);
+        }
+    }
+
+    @Benchmark
+    public List<Item> fuzzy() {
+        query = (query + 1) % QUERIES;
+        return index.searchFuzzy(fuzzyQueries[query], new Pagination(0, 20, Sort.unsorted()));
+    }
+
+    @Benchmark
+    public List<Item> exact() {
+        query = (query + 1) % QUERIES;
+        return index.search(exactQueries[query], new Pagination(0, 20, Sort.unsorted()));
+    }
+
+    /**
+     * Одна замена, вставка или удаление буквы.
+     */
+    private static String typo(String word, Random random) {
+        int position = random.nextInt(word.length());
+        char letter = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0:
+                return word.substring(0, position) + letter + word.substring(position + 1);
+            case 1:
+                return word.substring(0, position) + letter + word.substring(position);
+            default:
+                return word.substring(0, position) + word.substring(position + 1);
+        }
+    }
+}
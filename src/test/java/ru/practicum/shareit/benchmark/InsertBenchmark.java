@@ -0,0 +1,102 @@
+package ru.practicum.shareit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingPhase;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.item.comment.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вставка 100 000 бронирований и 100 000 отзывов через Hibernate.
+ * batchSize=1 повторяет прежнее поведение с IDENTITY, когда каждый INSERT шёл отдельным запросом,
+ * batchSize=50 - пакетная вставка с идентификаторами из последовательности.
+ * Запуск: mvn -P benchmark verify -Dbenchmark=InsertBenchmark
+ * По умолчанию база - H2 в памяти, где нет сетевых задержек и разница почти не видна; замер на PostgreSQL
+ * включается переменной BENCHMARK_POSTGRES_URL (см. BenchmarkContext).
+ * С параметром драйвера reWriteBatchedInserts=true пакет уходит одним многострочным INSERT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class InsertBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    private BenchmarkContext app;
+    private EntityManager entityManager;
+    private JdbcTemplate jdbcTemplate;
+    private User owner;
+    private User booker;
+    private Item item;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        app = BenchmarkContext.start("insert-benchmark",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        entityManager = app.entityManager();
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        owner = app.persistUser("Owner");
+        booker = app.persistUser("Booker");
+        item = app.persist(new Item(0, "Drill", "Benchmark item", true, owner.getId(), null));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clean() {
+        jdbcTemplate.update("delete from comments");
+        jdbcTemplate.update("delete from bookings");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        app.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * ROWS)
+    public void insertBookingsAndComments() {
+        LocalDateTime now = LocalDateTime.now();
+        app.inBatches(ROWS, i -> {
+            Booking booking = new Booking();
+            booking.setItem(item);
+            booking.setOwnerId(owner.getId());
+            booking.setBooker(booker);
+            booking.setStart(now.plusDays(i));
+            booking.setEnd(now.plusDays(i).plusHours(1));
+            booking.setStatus(BookingStatus.WAITING);
+            booking.setPhase(BookingPhase.FUTURE);
+            entityManager.persist(booking);
+
+            Comment comment = new Comment();
+            comment.setText("Comment " + i);
+            comment.setItem(item);
+            comment.setAuthor(booker);
+            comment.setCreated(now);
+            entityManager.persist(comment);
+        });
+    }
+}
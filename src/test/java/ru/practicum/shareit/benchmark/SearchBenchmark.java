@@ -0,0 +1,83 @@
+package ru.practicum.shareit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import ru.practicum.shareit.Pagination;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.TrigramItemIndex;
+import ru.practicum.shareit.user.model.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск вещей: индекс триграмм в памяти против LIKE по подстроке в базе, первая страница из 20 вещей.
+ * Запуск: mvn -P benchmark verify -Dbenchmark=SearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final String[] WORDS = {"drill", "hammer", "saw", "ladder", "tent", "bike", "camera", "boat",
+            "kayak", "projector", "speaker", "table", "chair", "mixer", "heater", "charger"};
+    private static final String[] QUERIES = {"drill", "amer", "kayak", "ight", "sp"};
+
+    @Param({"10000", "100000"})
+    private int items;
+
+    private BenchmarkContext app;
+    private TrigramItemIndex index;
+    private ItemRepository itemRepository;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        app = BenchmarkContext.start("search-benchmark", "shareit.item.search=memory");
+        index = app.getBean(TrigramItemIndex.class);
+        itemRepository = app.getBean(ItemRepository.class);
+
+        User owner = app.persistUser("Owner");
+        app.inBatches(items, i -> {
+            String name = WORDS[i % WORDS.length] + " " + i;
+            String description = "Light " + WORDS[(i * 7) % WORDS.length] + " for rent, model " + (i * 31);
+            app.entityManager().persist(new Item(0, name, description, i % 10 != 0, owner.getId(), null));
+        });
+        index.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        app.close();
+    }
+
+    @Benchmark
+    public List<Item> index() {
+        return index.search(nextQuery(), new Pagination(0, 20, Sort.unsorted()));
+    }
+
+    @Benchmark
+    public List<Item> like() {
+        return itemRepository.getItemsBySearchQuery(nextQuery(), new Pagination(0, 20, Sort.unsorted()));
+    }
+
+    private String nextQuery() {
+        query = (query + 1) % QUERIES.length;
+        return QUERIES[query];
+    }
+}
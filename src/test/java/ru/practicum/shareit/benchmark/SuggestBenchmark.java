@@ -0,0 +1,74 @@
+package ru.practicum.shareit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.shareit.item.dto.ItemDtoShort;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSuggestIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсказки по префиксу из дерева в памяти. Дерево заполняется через itemSaved и itemBooked без базы.
+ * churn - запрос вперемешку с бронированием и переименованием вещи, после которых списки узлов
+ * поправляются или пересчитываются.
+ * Запуск: mvn -P benchmark verify -Dbenchmark=SuggestBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class SuggestBenchmark {
+    private static final String[] WORDS = {"drill", "hammer", "saw", "ladder", "tent", "bike", "camera", "boat",
+            "kayak", "projector", "speaker", "table", "chair", "mixer", "heater", "charger"};
+    private static final String[] PREFIXES = {"d", "ka", "pro", "ch", "hammer 1", "bike 42", "s", "tab"};
+
+    @Param({"100000", "1000000"})
+    private int items;
+
+    private ItemSuggestIndex index;
+    private Random random;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        random = new Random(42);
+        index = new ItemSuggestIndex(null, null);
+        for (int i = 1; i <= items; i++) {
+            index.itemSaved(new Item(i, WORDS[i % WORDS.length] + " " + i, "Benchmark item", i % 10 != 0, 1L, null));
+        }
+        for (int i = 0; i < items; i++) {
+            index.itemBooked(1 + random.nextInt(items));
+        }
+    }
+
+    @Benchmark
+    public List<ItemDtoShort> suggest() {
+        query = (query + 1) % PREFIXES.length;
+        return index.suggest(PREFIXES[query], ItemSuggestIndex.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<ItemDtoShort> churn() {
+        int id = 1 + random.nextInt(items);
+        index.itemBooked(id);
+        if (query % 16 == 0) {
+            index.itemSaved(new Item(id, WORDS[random.nextInt(WORDS.length)] + " " + id, "Renamed", true, 1L, null));
+        }
+        return suggest();
+    }
+}